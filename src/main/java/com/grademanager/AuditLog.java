@@ -0,0 +1,351 @@
+package com.grademanager;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 成績変更の監査ログ（追記専用）
+ *
+ * 出席日数・テスト点・総授業日数の変更と、生徒の追加・削除を1行ずつ記録する。
+ *   audit.log … 本体（タブ区切り）: 日時, 操作者, 操作, 学籍番号, 科目, 項目, 変更前, 変更後, 前の行の位置
+ *   audit.idx … 索引（本体のどこまでを反映済みか + 学籍番号ごとの最新行の位置）
+ *
+ * 各行は同じ生徒の1つ前の行の位置を持つので、メモリには生徒ごとの最新行の位置だけを置き、
+ * 1人分の履歴はその鎖をたどって該当行だけを読む（ログ全体の件数によらず、その生徒の件数分の読み込み）。
+ *
+ * 書き込みは専用スレッドがまとめて行い（1回ごとに fsync）、画面の操作は待たせない。
+ * 索引は終了時と一定件数ごとに書き出し、起動時は索引以降の本体の末尾だけを読み直す。
+ */
+public class AuditLog implements Closeable {
+
+    /** 1件の記録 */
+    public record Entry(LocalDateTime time, String user, String action,
+                        String studentId, String subject, String field,
+                        String oldValue, String newValue) {}
+
+    // 操作の種類
+    public static final String STUDENT_ADD    = "STUDENT_ADD";
+    public static final String STUDENT_DELETE = "STUDENT_DELETE";
+    public static final String RECORD_UPDATE  = "RECORD_UPDATE";
+    public static final String SUBJECT_UPDATE = "SUBJECT_UPDATE";
+
+    /** 科目単位の変更（全生徒が対象）の学籍番号欄 */
+    public static final String ALL_STUDENTS = "*";
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    private static final int MAX_BATCH = 1024;
+    /** この件数を書くごとに索引を書き出す */
+    private static final int CHECKPOINT_INTERVAL = 100_000;
+    private static final Object SHUTDOWN = new Object();
+
+    private final Path logFile;
+    private final Path indexFile;
+    private final String user = System.getProperty("user.name", "unknown");
+
+    /** Entry または flush 待ちの CountDownLatch */
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    /** 学籍番号 → 最新行の位置（書き込みスレッドが更新、参照は synchronized） */
+    private final Map<String, Long> heads = new HashMap<>();
+    private final CountDownLatch ready = new CountDownLatch(1);
+    private final Thread writer;
+    private volatile IOException failure;
+
+    /** dir に audit.log / audit.idx を置く。索引の読み込みは書き込みスレッドで行う */
+    public AuditLog(Path dir) {
+        this.logFile = dir.resolve("audit.log");
+        this.indexFile = dir.resolve("audit.idx");
+        this.writer = new Thread(() -> run(dir), "audit-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** 既定の保存先（-Dgrademanager.audit.dir、なければ ~/.grade-manager） */
+    public static Path defaultDir() {
+        String dir = System.getProperty("grademanager.audit.dir");
+        return dir != null ? Paths.get(dir) : Paths.get(System.getProperty("user.home"), ".grade-manager");
+    }
+
+    // ── 記録 ────────────────────────────────────────────────
+
+    public void studentAdded(Student st) {
+        submit(STUDENT_ADD, st.getStudentId(), "", "name", "", st.getName());
+    }
+
+    public void studentDeleted(Student st) {
+        submit(STUDENT_DELETE, st.getStudentId(), "", "name", st.getName(), "");
+    }
+
+    /** 成績編集の前後を比べ、変わった項目だけを記録する */
+    public void recordChanges(Student st, Map<String, Student.SubjectRecord> before) {
+        for (Map.Entry<String, Student.SubjectRecord> e : st.getSubjectMap().entrySet()) {
+            Student.SubjectRecord now = e.getValue();
+            Student.SubjectRecord old = before.get(e.getKey());
+            String id = st.getStudentId(), subject = e.getKey();
+            if (old == null || old.totalDays != now.totalDays)
+                submit(RECORD_UPDATE, id, subject, "totalDays", old == null ? "" : String.valueOf(old.totalDays), String.valueOf(now.totalDays));
+            if (old == null || old.attendedDays != now.attendedDays)
+                submit(RECORD_UPDATE, id, subject, "attendedDays", old == null ? "" : String.valueOf(old.attendedDays), String.valueOf(now.attendedDays));
+            if (old == null || !Objects.equals(old.testScore, now.testScore))
+                submit(RECORD_UPDATE, id, subject, "testScore", old == null ? "" : score(old.testScore), score(now.testScore));
+        }
+    }
+
+    /** 科目管理の前後（科目名 → 総授業日数）を比べて記録する */
+    public void subjectChanges(Map<String, Integer> before, Map<String, Integer> after) {
+        for (Map.Entry<String, Integer> e : before.entrySet()) {
+            Integer now = after.get(e.getKey());
+            if (!Objects.equals(e.getValue(), now))
+                submit(SUBJECT_UPDATE, ALL_STUDENTS, e.getKey(), "totalDays",
+                       String.valueOf(e.getValue()), now == null ? "" : String.valueOf(now));
+        }
+        for (Map.Entry<String, Integer> e : after.entrySet()) {
+            if (!before.containsKey(e.getKey()))
+                submit(SUBJECT_UPDATE, ALL_STUDENTS, e.getKey(), "totalDays", "", String.valueOf(e.getValue()));
+        }
+    }
+
+    private void submit(String action, String studentId, String subject, String field, String oldValue, String newValue) {
+        if (!writer.isAlive()) return;   // 書き込みスレッドが止まっていれば溜めない（flush で失敗を通知する）
+        queue.add(new Entry(LocalDateTime.now(), user, action, studentId, subject, field, oldValue, newValue));
+    }
+
+    // ── 参照 ────────────────────────────────────────────────
+
+    /** 1生徒の変更履歴（古い順）。未書き込みの記録も書き終えてから読む */
+    public List<Entry> historyOf(String studentId) throws IOException {
+        flush();
+        Long head;
+        synchronized (heads) { head = heads.get(studentId); }
+        List<Entry> result = new ArrayList<>();
+        if (head == null) return result;
+        try (FileChannel ch = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            for (long off = head; off >= 0; ) {
+                String[] f = readLine(ch, off).split("\t", -1);
+                result.add(parse(f));
+                off = Long.parseLong(f[8]);
+            }
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * 待ち行列の記録をすべて書き終えるまで待つ。
+     * 書き込みスレッドが失敗して止まっていれば、その原因を投げる（待ち続けない）
+     */
+    public void flush() throws IOException {
+        CountDownLatch done = new CountDownLatch(1);
+        queue.add(done);
+        awaitWriter(ready);
+        awaitWriter(done);
+        if (failure != null) throw failure;
+    }
+
+    private void awaitWriter(CountDownLatch latch) throws IOException {
+        try {
+            while (!latch.await(200, TimeUnit.MILLISECONDS)) {
+                if (!writer.isAlive() && latch.getCount() > 0) {
+                    if (failure != null) throw failure;
+                    throw new IOException("監査ログの書き込みスレッドが停止しています");
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("監査ログの書き込み待ちが中断されました");
+        }
+    }
+
+    /** 残りを書き終え、索引を書き出して閉じる */
+    @Override
+    public void close() {
+        queue.add(SHUTDOWN);
+        try {
+            writer.join(5000);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ── 書き込みスレッド ────────────────────────────────────────
+
+    private void run(Path dir) {
+        try {
+            Files.createDirectories(dir);
+            loadIndex();
+        } catch (IOException | RuntimeException ex) {
+            failure = ex instanceof IOException io ? io : new IOException("監査ログの索引を読み込めませんでした", ex);
+        } finally {
+            ready.countDown();
+        }
+
+        List<Object> batch = new ArrayList<>(MAX_BATCH);
+        try (FileChannel log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            int sinceCheckpoint = 0;
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+                boolean shutdown = batch.contains(SHUTDOWN);
+                sinceCheckpoint += writeBatch(log, batch);
+                batch.clear();
+                if (shutdown || sinceCheckpoint >= CHECKPOINT_INTERVAL) {
+                    writeIndex(log.size());
+                    sinceCheckpoint = 0;
+                }
+                if (shutdown) return;
+            }
+        } catch (IOException | RuntimeException ex) {
+            failure = ex instanceof IOException io ? io : new IOException("監査ログの書き込みに失敗しました", ex);
+            System.err.println("監査ログの書き込みに失敗しました: " + ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // 待っている呼び出し元を解放する
+            for (Object o : queue) if (o instanceof CountDownLatch l) l.countDown();
+            for (Object o : batch) if (o instanceof CountDownLatch l) l.countDown();
+        }
+    }
+
+    /** まとめて書いて fsync してから、最新行の位置を進める。書いた件数を返す */
+    private int writeBatch(FileChannel log, List<Object> batch) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        Map<String, Long> newHeads = new HashMap<>();
+        long pos = log.size();
+        int written = 0;
+        for (Object o : batch) {
+            if (!(o instanceof Entry e)) continue;
+            Long prev = newHeads.get(e.studentId());
+            if (prev == null) synchronized (heads) { prev = heads.get(e.studentId()); }
+            newHeads.put(e.studentId(), pos + buf.size());
+            buf.write(format(e, prev == null ? -1 : prev).getBytes(StandardCharsets.UTF_8));
+            written++;
+        }
+        if (written > 0) {
+            ByteBuffer bb = ByteBuffer.wrap(buf.toByteArray());
+            while (bb.hasRemaining()) log.write(bb);
+            log.force(false);
+            synchronized (heads) { heads.putAll(newHeads); }
+        }
+        for (Object o : batch) if (o instanceof CountDownLatch l) l.countDown();
+        return written;
+    }
+
+    /** 索引を一時ファイルに書いてから置き換える */
+    private void writeIndex(long coveredBytes) throws IOException {
+        Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            w.write(coveredBytes + "\n");
+            synchronized (heads) {
+                for (Map.Entry<String, Long> e : heads.entrySet())
+                    w.write(Tsv.escape(e.getKey()) + "\t" + e.getValue() + "\n");
+            }
+        }
+        Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 索引を読み込み、索引に反映されていない本体の末尾があれば読んで補う。
+     * 末尾が改行で終わっていなければ書き込み中に止まった行なので切り詰める
+     * （fsync を終えていない＝記録済みと返していない行で、残すと次の追記がその行に続いてしまう）
+     */
+    private void loadIndex() throws IOException {
+        long covered = 0;
+        if (Files.exists(indexFile)) {
+            try (BufferedReader r = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+                String line = r.readLine();
+                if (line != null) covered = Long.parseLong(line.trim());
+                while ((line = r.readLine()) != null) {
+                    int tab = line.lastIndexOf('\t');
+                    if (tab > 0) heads.put(Tsv.unescape(line.substring(0, tab)), Long.parseLong(line.substring(tab + 1)));
+                }
+            }
+        }
+        if (!Files.exists(logFile)) return;
+
+        long size = Files.size(logFile);
+        if (covered > size) {            // 索引が本体より新しい（本体が差し替えられた）場合は作り直す
+            heads.clear();
+            covered = 0;
+        }
+        if (covered == size) return;
+        // 行頭の位置と4番目の欄（学籍番号）だけを拾いながら、まとめて読み進める
+        try (FileChannel ch = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(1 << 20);
+            ByteArrayOutputStream id = new ByteArrayOutputStream(32);
+            long pos = covered, start = covered;
+            int tabs = 0;
+            while (pos < size) {
+                buf.clear();
+                int n = ch.read(buf, pos);
+                if (n <= 0) break;
+                for (int i = 0; i < n; i++) {
+                    byte b = buf.get(i);
+                    if (b == '\n') {
+                        heads.put(Tsv.unescape(id.toString(StandardCharsets.UTF_8)), start);
+                        id.reset();
+                        tabs = 0;
+                        start = pos + i + 1;
+                    } else if (b == '\t') {
+                        tabs++;
+                    } else if (tabs == 3) {
+                        id.write(b);
+                    }
+                }
+                pos += n;
+            }
+            if (start < size) {
+                try (FileChannel w = FileChannel.open(logFile, StandardOpenOption.WRITE)) {
+                    w.truncate(start);
+                    w.force(false);
+                }
+                System.err.println("監査ログ末尾の書きかけの行（" + (size - start) + " バイト）を切り詰めました");
+                size = start;
+            }
+        }
+        writeIndex(size);
+    }
+
+    // ── 行の形式 ────────────────────────────────────────────────
+
+    private static String format(Entry e, long prev) {
+        return String.join("\t", TIME.format(e.time()), Tsv.escape(e.user()), e.action(), Tsv.escape(e.studentId()),
+                Tsv.escape(e.subject()), e.field(), Tsv.escape(e.oldValue()), Tsv.escape(e.newValue()),
+                String.valueOf(prev)) + "\n";
+    }
+
+    private static Entry parse(String[] f) {
+        return new Entry(LocalDateTime.parse(f[0], TIME), Tsv.unescape(f[1]), f[2], Tsv.unescape(f[3]),
+                Tsv.unescape(f[4]), f[5], Tsv.unescape(f[6]), Tsv.unescape(f[7]));
+    }
+
+    /** offset から改行までを読む */
+    private static String readLine(FileChannel ch, long offset) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        ByteBuffer buf = ByteBuffer.allocate(512);
+        long pos = offset;
+        while (true) {
+            buf.clear();
+            int n = ch.read(buf, pos);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                byte b = buf.get(i);
+                if (b == '\n') return out.toString(StandardCharsets.UTF_8);
+                out.write(b);
+            }
+            pos += n;
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /** テスト点は丸めずにそのまま記録する（60.0 → "60", 59.5 → "59.5"） */
+    private static String score(Double v) {
+        return v == null ? "" : BigDecimal.valueOf(v).stripTrailingZeros().toPlainString();
+    }
+}
@@ -0,0 +1,119 @@
+package com.grademanager;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * 変更フィード（ChangeFeed）で配信するイベント
+ *
+ * どのイベントも通し番号（seq、1から連番）と発生日時を持つ。
+ * 外部のツール向けに {@link #toJson()} で1行の JSON にできる（"type" にイベント名が入る）。
+ */
+public sealed interface ChangeEvent {
+
+    long seq();
+    LocalDateTime time();
+
+    /** 1行の JSON（改行を含まない） */
+    String toJson();
+
+    /** 生徒の追加 */
+    record StudentAdded(long seq, LocalDateTime time, String studentId, String name) implements ChangeEvent {
+        public String toJson() {
+            return head("StudentAdded", seq, time) + field("studentId", studentId) + field("name", name) + "}";
+        }
+    }
+
+    /** 生徒の削除 */
+    record StudentRemoved(long seq, LocalDateTime time, String studentId, String name) implements ChangeEvent {
+        public String toJson() {
+            return head("StudentRemoved", seq, time) + field("studentId", studentId) + field("name", name) + "}";
+        }
+    }
+
+    /**
+     * 出席日数の変更。
+     * belowCut は変更後に出席8割を下回っているか、crossedBelowCut は今回の変更で下回ったか
+     */
+    record AttendanceChanged(long seq, LocalDateTime time, String studentId, String subject,
+                             int oldAttended, int newAttended, int totalDays,
+                             boolean belowCut, boolean crossedBelowCut) implements ChangeEvent {
+        public String toJson() {
+            return head("AttendanceChanged", seq, time) + field("studentId", studentId) + field("subject", subject)
+                    + number("oldAttended", oldAttended) + number("newAttended", newAttended) + number("totalDays", totalDays)
+                    + ",\"belowCut\":" + belowCut + ",\"crossedBelowCut\":" + crossedBelowCut + "}";
+        }
+    }
+
+    /** テスト点の変更（未入力は null） */
+    record TestScoreChanged(long seq, LocalDateTime time, String studentId, String subject,
+                            Double oldScore, Double newScore) implements ChangeEvent {
+        public String toJson() {
+            return head("TestScoreChanged", seq, time) + field("studentId", studentId) + field("subject", subject)
+                    + number("oldScore", oldScore) + number("newScore", newScore) + "}";
+        }
+    }
+
+    /** 評価の変更（出席・テスト点の変更の結果として発生する） */
+    record GradeChanged(long seq, LocalDateTime time, String studentId, String subject,
+                        String oldGrade, String newGrade, Double composite) implements ChangeEvent {
+        public String toJson() {
+            return head("GradeChanged", seq, time) + field("studentId", studentId) + field("subject", subject)
+                    + field("oldGrade", oldGrade) + field("newGrade", newGrade) + number("composite", composite) + "}";
+        }
+    }
+
+    /** 科目の総授業日数の変更（追加は oldTotalDays、削除は newTotalDays が null） */
+    record SubjectChanged(long seq, LocalDateTime time, String subject,
+                          Integer oldTotalDays, Integer newTotalDays) implements ChangeEvent {
+        public String toJson() {
+            return head("SubjectChanged", seq, time) + field("subject", subject)
+                    + number("oldTotalDays", oldTotalDays) + number("newTotalDays", newTotalDays) + "}";
+        }
+    }
+
+    /**
+     * 表示する名簿の入れ替え（起動時の読み込み・DBを開く・ページ送り・クラスの切り替え）。
+     * 入れ替えた生徒ごとのイベントは出さないので、購読者はここでそれまでの名簿の状態を捨てる
+     */
+    record RosterLoaded(long seq, LocalDateTime time, String source, int students) implements ChangeEvent {
+        public String toJson() {
+            return head("RosterLoaded", seq, time) + field("source", source) + number("students", students) + "}";
+        }
+    }
+
+    // ── JSON ────────────────────────────────────────────────
+
+    private static String head(String type, long seq, LocalDateTime time) {
+        return "{\"type\":\"" + type + "\",\"seq\":" + seq
+                + ",\"time\":\"" + DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(time) + "\"";
+    }
+
+    private static String field(String name, String value) {
+        if (value == null) return ",\"" + name + "\":null";
+        StringBuilder sb = new StringBuilder(value.length() + name.length() + 8);
+        sb.append(",\"").append(name).append("\":\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"'  -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default   -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static String number(String name, Number value) {
+        if (value == null) return ",\"" + name + "\":null";
+        if (value instanceof Double d) return ",\"" + name + "\":" + String.format(Locale.ROOT, "%.1f", d);
+        return ",\"" + name + "\":" + value;
+    }
+}
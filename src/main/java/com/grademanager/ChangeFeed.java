@@ -0,0 +1,390 @@
+package com.grademanager;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 成績変更のイベント配信（java.util.concurrent.Flow）
+ *
+ * 画面で確定した変更（生徒の追加・削除、出席日数・テスト点・評価の変更、科目の授業日数の変更、名簿の入れ替え）を
+ * 通し番号付きの {@link ChangeEvent} にして、まとまり（{@link Batch}）ごとに購読者へ配る。
+ *
+ *   - 発行側（FXスレッド）は待ち行列に入れるだけで、配信は専用スレッドが行う
+ *   - 配信スレッドは溜まったイベントをまとめて1つの Batch にする（購読者が遅いほど大きくなる）
+ *   - 購読者が request した分しか送らない（SubmissionPublisher のバッファが埋まると配信スレッドが待つ。
+ *     待つのは1 Batch あたり最大 {@link #OFFER_TIMEOUT_SECONDS} 秒で、それでも空かない購読者にはその Batch を送らない）
+ *
+ * 付属の購読者:
+ *   -Dgrademanager.feed.file=path   … JSON Lines でファイルに追記（{@link FileSink}）
+ *   -Dgrademanager.feed.port=N      … localhost:N で待ち受け、接続したクライアントに JSON Lines を送る（{@link SocketSink}）
+ */
+public class ChangeFeed implements AutoCloseable {
+
+    /** 1回に配るイベントのまとまり（firstSeq〜lastSeq の連番） */
+    public record Batch(long firstSeq, long lastSeq, List<ChangeEvent> events) {}
+
+    private static final int MAX_BATCH = 512;
+    /** 待ち行列の上限（超えた分は捨てて数える） */
+    private static final int MAX_PENDING = 100_000;
+    /** 購読者ごとのバッファ（Batch 数） */
+    private static final int BUFFER = 64;
+    /** バッファが埋まった購読者を待つ上限（超えたらその購読者には送らず、feed.dropped に数える） */
+    private static final long OFFER_TIMEOUT_SECONDS = 5;
+    private static final ChangeEvent SHUTDOWN = new ChangeEvent.StudentRemoved(0, LocalDateTime.MIN, "", "");
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "change-feed");
+        t.setDaemon(true);
+        return t;
+    });
+    private final SubmissionPublisher<Batch> publisher = new SubmissionPublisher<>(executor, BUFFER);
+    private final BlockingQueue<ChangeEvent> pending = new LinkedBlockingQueue<>(MAX_PENDING);
+    private final AtomicLong seq = new AtomicLong();
+    private final Thread dispatcher;
+    /**
+     * 購読者がいるか（発行側が見る値）。SubmissionPublisher#hasSubscribers は背圧で submit が
+     * 待っている間ロックを取れず FXスレッドを止めてしまうため、購読時と配信後に配信スレッドが更新する
+     */
+    private volatile boolean active;
+
+    public ChangeFeed() {
+        dispatcher = new Thread(this::dispatch, "change-feed-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /** システムプロパティで指定された購読者（ファイル・ソケット）を付ける */
+    public void attachConfiguredSinks() {
+        String file = System.getProperty("grademanager.feed.file");
+        if (file != null) {
+            try {
+                subscribe(new FileSink(Paths.get(file)));
+            } catch (IOException ex) {
+                System.err.println("変更フィードのファイルを開けませんでした: " + ex.getMessage());
+            }
+        }
+        Integer port = Integer.getInteger("grademanager.feed.port");
+        if (port != null) {
+            try {
+                subscribe(new SocketSink(port));
+            } catch (IOException ex) {
+                System.err.println("変更フィードのポートを開けませんでした: " + ex.getMessage());
+            }
+        }
+    }
+
+    public void subscribe(Flow.Subscriber<? super Batch> subscriber) {
+        publisher.subscribe(subscriber);
+        active = true;
+    }
+
+    public int getSubscriberCount() { return publisher.getNumberOfSubscribers(); }
+
+    /** 最後に振った通し番号 */
+    public long lastSeq() { return seq.get(); }
+
+    // ── 発行（モデルの変更箇所から呼ぶ） ──────────────────────────
+
+    public void studentAdded(Student st) {
+        if (hasSubscribers())
+            emit(new ChangeEvent.StudentAdded(seq.incrementAndGet(), LocalDateTime.now(), st.getStudentId(), st.getName()));
+    }
+
+    public void studentRemoved(Student st) {
+        if (hasSubscribers())
+            emit(new ChangeEvent.StudentRemoved(seq.incrementAndGet(), LocalDateTime.now(), st.getStudentId(), st.getName()));
+    }
+
+    /** 成績編集の前後を比べ、出席・テスト点・評価の変化をイベントにする */
+    public void recordChanges(Student st, Map<String, Student.SubjectRecord> before) {
+        if (!hasSubscribers()) return;
+        LocalDateTime now = LocalDateTime.now();
+        String id = st.getStudentId();
+        for (Map.Entry<String, Student.SubjectRecord> e : st.getSubjectMap().entrySet()) {
+            String subject = e.getKey();
+            Student.SubjectRecord r = e.getValue();
+            Student.SubjectRecord old = before.getOrDefault(subject, new Student.SubjectRecord(r.totalDays));
+            if (old.attendedDays != r.attendedDays || old.totalDays != r.totalDays) {
+                boolean below = !r.hasSufficientAttendance();
+                emit(new ChangeEvent.AttendanceChanged(seq.incrementAndGet(), now, id, subject,
+                        old.attendedDays, r.attendedDays, r.totalDays, below, below && old.hasSufficientAttendance()));
+            }
+            if (!Objects.equals(old.testScore, r.testScore)) {
+                emit(new ChangeEvent.TestScoreChanged(seq.incrementAndGet(), now, id, subject, old.testScore, r.testScore));
+            }
+            String oldGrade = old.gradeLabel(), newGrade = r.gradeLabel();
+            if (!oldGrade.equals(newGrade)) {
+                emit(new ChangeEvent.GradeChanged(seq.incrementAndGet(), now, id, subject, oldGrade, newGrade, r.compositeScore()));
+            }
+        }
+    }
+
+    /**
+     * 複数の生徒の記録をまとめて変えうる操作（科目管理など）の前に、記録の写しを取る。
+     * 購読者がいなければ null（写しを作らない）。変更後に {@link #recordChanges(Collection, Map)} に渡す
+     */
+    public Map<Student, Map<String, Student.SubjectRecord>> captureRecords(Collection<Student> students) {
+        if (!hasSubscribers()) return null;
+        Map<Student, Map<String, Student.SubjectRecord>> captured = new IdentityHashMap<>(students.size());
+        for (Student st : students) {
+            Map<String, Student.SubjectRecord> copy = new HashMap<>();
+            st.getSubjectMap().forEach((subject, r) -> copy.put(subject, r.copy()));
+            captured.put(st, copy);
+        }
+        return captured;
+    }
+
+    /** captureRecords の写しと今の記録を生徒ごとに比べ、変わった分をイベントにする */
+    public void recordChanges(Collection<Student> students, Map<Student, Map<String, Student.SubjectRecord>> captured) {
+        if (captured == null) return;
+        for (Student st : students) {
+            Map<String, Student.SubjectRecord> before = captured.get(st);
+            if (before != null) recordChanges(st, before);
+        }
+    }
+
+    /** 表示する名簿を入れ替えた（入れ替えた生徒ごとのイベントは出さない） */
+    public void rosterLoaded(String source, int students) {
+        if (hasSubscribers())
+            emit(new ChangeEvent.RosterLoaded(seq.incrementAndGet(), LocalDateTime.now(), source, students));
+    }
+
+    /** 科目管理の前後（科目名 → 総授業日数）を比べてイベントにする */
+    public void subjectChanges(Map<String, Integer> before, Map<String, Integer> after) {
+        if (!hasSubscribers()) return;
+        LocalDateTime now = LocalDateTime.now();
+        Set<String> names = new LinkedHashSet<>(before.keySet());
+        names.addAll(after.keySet());
+        for (String subject : names) {
+            Integer o = before.get(subject), n = after.get(subject);
+            if (!Objects.equals(o, n))
+                emit(new ChangeEvent.SubjectChanged(seq.incrementAndGet(), now, subject, o, n));
+        }
+    }
+
+    /** 購読者がいなければイベントを作らない（連番も進めない） */
+    private boolean hasSubscribers() {
+        return active;
+    }
+
+    private void emit(ChangeEvent event) {
+        if (!pending.offer(event)) Metrics.count("feed.dropped", 1);
+    }
+
+    // ── 配信スレッド ────────────────────────────────────────────
+
+    private void dispatch() {
+        List<ChangeEvent> batch = new ArrayList<>(MAX_BATCH);
+        try {
+            while (true) {
+                batch.add(pending.take());
+                pending.drainTo(batch, MAX_BATCH - 1);
+                boolean shutdown = batch.remove(SHUTDOWN);
+                if (!batch.isEmpty()) {
+                    List<ChangeEvent> events = List.copyOf(batch);
+                    // 購読者のバッファが空くまで待つ（背圧）。待ちは時間で区切り、close() の割り込みでも抜ける
+                    publisher.offer(new Batch(events.get(0).seq(), events.get(events.size() - 1).seq(), events),
+                            OFFER_TIMEOUT_SECONDS, TimeUnit.SECONDS, (subscriber, dropped) -> {
+                                Metrics.count("feed.dropped", dropped.events().size());
+                                return false;
+                            });
+                    Metrics.count("feed.events", events.size());
+                    Metrics.count("feed.batches", 1);
+                    active = publisher.hasSubscribers();
+                }
+                batch.clear();
+                if (shutdown) return;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** 残りを配ってから購読者に完了を伝える */
+    @Override
+    public void close() {
+        // 待ち行列が満杯でも終了の合図は必ず入れる
+        while (!pending.offer(SHUTDOWN)) pending.poll();
+        try {
+            dispatcher.join(5000);
+            if (dispatcher.isAlive()) {
+                // 読まない購読者を offer が待っている間なら、割り込んで残りは諦めて終了する
+                dispatcher.interrupt();
+                dispatcher.join(1000);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        publisher.close();
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ═══════════════════════ Sinks ═══════════════════════
+
+    /** 1イベント1行の JSON（JSON Lines）で書き出す購読者。1 Batch ずつ request する */
+    abstract static class LineSink implements Flow.Subscriber<Batch> {
+        private Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(Batch batch) {
+            StringBuilder sb = new StringBuilder(batch.events().size() * 160);
+            for (ChangeEvent e : batch.events()) sb.append(e.toJson()).append('\n');
+            try {
+                write(sb.toString().getBytes(StandardCharsets.UTF_8));
+            } catch (IOException ex) {
+                System.err.println("変更フィードの書き出しに失敗しました: " + ex.getMessage());
+                subscription.cancel();
+                closeQuietly();
+                return;
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) { closeQuietly(); }
+
+        @Override
+        public void onComplete() { closeQuietly(); }
+
+        /** 1 Batch 分の行を書いて送り出す */
+        protected abstract void write(byte[] lines) throws IOException;
+
+        protected abstract void close() throws IOException;
+
+        private void closeQuietly() {
+            try { close(); } catch (IOException ignored) {}
+        }
+    }
+
+    /** ファイルに追記する（1 Batch ごとに flush） */
+    public static final class FileSink extends LineSink {
+        private final OutputStream out;
+
+        public FileSink(Path file) throws IOException {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+            this.out = new BufferedOutputStream(Files.newOutputStream(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND), 1 << 16);
+        }
+
+        @Override
+        protected void write(byte[] lines) throws IOException {
+            out.write(lines);
+            out.flush();
+        }
+
+        @Override
+        protected void close() throws IOException { out.close(); }
+    }
+
+    /**
+     * localhost で待ち受け、接続中のクライアント全員に送る。
+     * クライアントごとに送信待ちの行列と送信スレッドを持つので、読まないクライアントがいても
+     * フィード全体や他のクライアントは待たない。未送信が {@link #CLIENT_BUFFER_BYTES} バイトを超えたクライアントは切断する。
+     */
+    public static final class SocketSink extends LineSink {
+        /** クライアントごとの未送信の上限（バイト。Batch の大きさは溜まり具合で変わるので件数ではなく量で区切る） */
+        static final long CLIENT_BUFFER_BYTES = 4L << 20;
+
+        private final ServerSocket server;
+        private final List<Client> clients = new CopyOnWriteArrayList<>();
+
+        public SocketSink(int port) throws IOException {
+            this.server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+            Thread acceptor = new Thread(this::acceptLoop, "change-feed-accept");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        public int getPort() { return server.getLocalPort(); }
+
+        /** 接続中のクライアント数 */
+        public int getClientCount() { return clients.size(); }
+
+        private void acceptLoop() {
+            while (!server.isClosed()) {
+                try {
+                    clients.add(new Client(server.accept()));
+                } catch (IOException ex) {
+                    return;   // close() で閉じられた
+                }
+            }
+        }
+
+        @Override
+        protected void write(byte[] lines) {
+            for (Client c : clients) {
+                if (!c.enqueue(lines)) {
+                    Metrics.count("feed.slowClients", 1);
+                    c.disconnect();
+                }
+            }
+        }
+
+        @Override
+        protected void close() throws IOException {
+            server.close();
+            for (Client c : clients) c.disconnect();
+        }
+
+        /** 1クライアント分の送信行列と送信スレッド */
+        private final class Client {
+            private final Socket socket;
+            private final BlockingQueue<byte[]> queue = new LinkedBlockingQueue<>();
+            private final AtomicLong pendingBytes = new AtomicLong();
+            private final Thread sender;
+
+            Client(Socket socket) {
+                this.socket = socket;
+                this.sender = new Thread(this::sendLoop, "change-feed-client");
+                sender.setDaemon(true);
+                sender.start();
+            }
+
+            /** 上限を超えるなら入れずに false */
+            boolean enqueue(byte[] lines) {
+                if (pendingBytes.addAndGet(lines.length) > CLIENT_BUFFER_BYTES) return false;
+                queue.add(lines);
+                return true;
+            }
+
+            private void sendLoop() {
+                try {
+                    OutputStream out = socket.getOutputStream();
+                    while (true) {
+                        byte[] lines = queue.take();
+                        out.write(lines);
+                        out.flush();
+                        pendingBytes.addAndGet(-lines.length);
+                    }
+                } catch (IOException | InterruptedException ex) {
+                    disconnect();
+                }
+            }
+
+            /** ソケットを閉じれば、書き込み中の送信スレッドも例外で抜ける */
+            void disconnect() {
+                clients.remove(this);
+                sender.interrupt();
+                try { socket.close(); } catch (IOException ignored) {}
+            }
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.grademanager;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * 複数クラスの名簿（ワークスペース）
+ *
+ * クラスごとの名簿は組み込みDB（GradeRepository）のファイルに保存し、開いたときに初めて読み込む。
+ * メモリに置くのは最近使った N クラス分だけで、それを超えると最も長く使っていないクラスを
+ * ファイルに書き戻してから手放す（アクセス順の LinkedHashMap による LRU）。
+ *
+ * クラスごとの集計（人数・記録数・総合点の合計・不可数・評価分布）は workspace.tsv に持つので、
+ * 全クラスの集計は名簿を読み込まずに出せる。
+ *
+ *   -Dgrademanager.workspace.dir=...      保存先（既定 ~/.grade-manager/classes）
+ *   -Dgrademanager.workspace.resident=N   メモリに置くクラス数（既定 3）
+ */
+public class ClassWorkspace implements Closeable {
+
+    /** クラスごとの集計（名簿を読まずに全体集計を出すための軽い要約） */
+    public record ClassSummary(String name, String file, int students, int records, int graded,
+                               double compositeSum, int failing, Map<String, Integer> gradeCounts) {
+
+        static ClassSummary of(String name, String file, Collection<Student> students) {
+            int records = 0, graded = 0, failing = 0;
+            double sum = 0;
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            for (Student st : students) {
+                for (Student.SubjectRecord r : st.getSubjectMap().values()) {
+                    records++;
+                    String g = r.gradeLabel();
+                    counts.merge(g, 1, Integer::sum);
+                    if (GradingRule.isFail(g)) failing++;
+                    Double c = r.compositeScore();
+                    if (c != null) { graded++; sum += c; }
+                }
+            }
+            return new ClassSummary(name, file, students.size(), records, graded, sum, failing, counts);
+        }
+
+        /** 総合点の平均（採点済みの記録のみ） */
+        public double average() { return graded == 0 ? 0 : compositeSum / graded; }
+
+        /** 不可の割合（全記録に対して） */
+        public double failRate() { return records == 0 ? 0 : (double) failing / records; }
+
+        String toLine() {
+            StringJoiner g = new StringJoiner(",");
+            gradeCounts.forEach((k, v) -> g.add(k + ":" + v));
+            return String.join("\t", Tsv.escape(name), file, String.valueOf(students), String.valueOf(records),
+                    String.valueOf(graded), String.valueOf(compositeSum), String.valueOf(failing), g.toString());
+        }
+
+        static ClassSummary parse(String line) {
+            String[] f = line.split("\t", -1);
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            if (!f[7].isEmpty()) {
+                for (String kv : f[7].split(",")) {
+                    int i = kv.lastIndexOf(':');
+                    counts.put(kv.substring(0, i), Integer.parseInt(kv.substring(i + 1)));
+                }
+            }
+            return new ClassSummary(Tsv.unescape(f[0]), f[1], Integer.parseInt(f[2]), Integer.parseInt(f[3]),
+                    Integer.parseInt(f[4]), Double.parseDouble(f[5]), Integer.parseInt(f[6]), counts);
+        }
+    }
+
+    /** メモリ上の1クラス分の名簿 */
+    public static final class Gradebook {
+        private final String name;
+        private List<Student> students;
+        private Map<String, Integer> subjectTotalDays;
+        /** 最後に保存してから変わった可能性があるか */
+        private boolean dirty;
+        /** update のたびに増える（保存中に更新されたら、保存後も dirty のままにする） */
+        private long version;
+
+        Gradebook(String name, List<Student> students, Map<String, Integer> subjectTotalDays) {
+            this.name = name;
+            this.students = students;
+            this.subjectTotalDays = subjectTotalDays;
+        }
+
+        public String getName() { return name; }
+        public List<Student> getStudents() { return students; }
+        public Map<String, Integer> getSubjectTotalDays() { return subjectTotalDays; }
+    }
+
+    private final Path dir;
+    private final Path indexFile;
+    private final int maxResident;
+    /** 全クラスの集計（作成順） */
+    private final Map<String, ClassSummary> summaries = new LinkedHashMap<>();
+    /** メモリ上の名簿（アクセス順。先頭が最も長く使っていないクラス） */
+    private final LinkedHashMap<String, Gradebook> resident = new LinkedHashMap<>(16, 0.75f, true);
+    /** 手放したが書き戻しが終わっていない名簿（その間に開かれたら、古いファイルではなくこちらを使う） */
+    private final Map<String, Gradebook> saving = new HashMap<>();
+
+    public ClassWorkspace(Path dir, int maxResident) throws IOException {
+        if (maxResident < 1) throw new IllegalArgumentException("メモリに置くクラス数は1以上にしてください: " + maxResident);
+        this.dir = dir;
+        this.indexFile = dir.resolve("workspace.tsv");
+        this.maxResident = maxResident;
+        if (Files.exists(indexFile)) {
+            for (String line : Files.readAllLines(indexFile, StandardCharsets.UTF_8)) {
+                if (line.isBlank()) continue;
+                ClassSummary s = ClassSummary.parse(line);
+                summaries.put(s.name(), s);
+            }
+        }
+    }
+
+    /** 既定の保存先（-Dgrademanager.workspace.dir、なければ ~/.grade-manager/classes） */
+    public static Path defaultDir() {
+        String dir = System.getProperty("grademanager.workspace.dir");
+        return dir != null ? Paths.get(dir) : Paths.get(System.getProperty("user.home"), ".grade-manager", "classes");
+    }
+
+    /** 既定のメモリに置くクラス数（-Dgrademanager.workspace.resident、なければ 3） */
+    public static int defaultMaxResident() {
+        return Integer.getInteger("grademanager.workspace.resident", 3);
+    }
+
+    // ── 参照 ────────────────────────────────────────────────
+
+    public synchronized List<String> classNames() { return new ArrayList<>(summaries.keySet()); }
+
+    public synchronized boolean contains(String name) { return summaries.containsKey(name); }
+
+    /** メモリに載っているか（アクセス順は変えない） */
+    public synchronized boolean isResident(String name) { return resident.containsKey(name); }
+
+    /** クラスごとの付随データ（監査ログ・学期スナップショット）の置き場所 */
+    public synchronized Path dataDir(String name) {
+        return dir.resolve(fileOf(name) + ".data");
+    }
+
+    public synchronized List<ClassSummary> summaries() { return new ArrayList<>(summaries.values()); }
+
+    /** 全クラスを合わせた集計（各クラスの要約を足し合わせるだけで、名簿は読まない） */
+    public synchronized ClassSummary total() {
+        int students = 0, records = 0, graded = 0, failing = 0;
+        double sum = 0;
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (ClassSummary s : summaries.values()) {
+            students += s.students(); records += s.records(); graded += s.graded();
+            failing += s.failing(); sum += s.compositeSum();
+            s.gradeCounts().forEach((k, v) -> counts.merge(k, v, Integer::sum));
+        }
+        return new ClassSummary("全クラス", "", students, records, graded, sum, failing, counts);
+    }
+
+    // ── 読み込み・更新 ────────────────────────────────────────
+
+    /**
+     * クラスを開く。メモリになければファイルから読み、上限を超えた分を書き戻して手放す。
+     * ファイルの読み書きはロックの外で行うので、その間も他のスレッドは一覧・集計を参照できる
+     */
+    public Gradebook open(String name) throws SQLException, IOException {
+        Gradebook gb;
+        String file = null;
+        synchronized (this) {
+            gb = resident.get(name);
+            if (gb == null) gb = saving.get(name);
+            if (gb == null) file = fileOf(name);
+        }
+        if (gb == null) {
+            long t0 = Metrics.start();
+            try (GradeRepository repo = new GradeRepository(dir.resolve(file).toFile())) {
+                gb = new Gradebook(name, repo.loadPage(0, repo.countStudents()), repo.loadSubjects());
+            }
+            Metrics.stop("workspace.load", t0);
+        }
+        List<Gradebook> evicted;
+        synchronized (this) {
+            // 読み込んでいる間に別のスレッドが同じクラスを開いていれば、そちらを使う
+            Gradebook current = resident.get(name);
+            if (current != null) gb = current;
+            else resident.put(name, gb);
+            evicted = takeOverflow();
+        }
+        saveAll(evicted);
+        return gb;
+    }
+
+    /** 新しいクラスを作ってすぐファイルに保存する */
+    public Gradebook create(String name, List<Student> students, Map<String, Integer> subjectTotalDays)
+            throws SQLException, IOException {
+        Gradebook gb = new Gradebook(name, new ArrayList<>(students), new LinkedHashMap<>(subjectTotalDays));
+        gb.dirty = true;
+        List<Gradebook> evicted;
+        synchronized (this) {
+            if (summaries.containsKey(name)) throw new IllegalArgumentException("「" + name + "」は既にあります");
+            summaries.put(name, ClassSummary.of(name, newFileName(), gb.students));
+            // 保存が終わる前に開かれても、まだないファイルを読まないよう先にメモリに載せる
+            resident.put(name, gb);
+            evicted = takeOverflow();
+        }
+        Files.createDirectories(dir);
+        save(gb);
+        saveAll(evicted);
+        return gb;
+    }
+
+    /**
+     * 画面で編集した名簿を反映し、集計を取り直す（ファイルへは手放すときか close 時に書く）。
+     * 書き戻しはバックグラウンドで行うため、画面の生徒とは共有せず記録まで複製して持つ
+     */
+    public synchronized void update(String name, List<Student> students, Map<String, Integer> subjectTotalDays) throws IOException {
+        Gradebook gb = resident.get(name);
+        if (gb == null) gb = saving.get(name);
+        if (gb == null) return;
+        List<Student> copies = new ArrayList<>(students.size());
+        for (Student st : students) copies.add(st.copy());
+        gb.students = copies;
+        gb.subjectTotalDays = new LinkedHashMap<>(subjectTotalDays);
+        gb.dirty = true;
+        gb.version++;
+        summaries.put(name, ClassSummary.of(name, summaries.get(name).file(), gb.students));
+        writeIndex();
+    }
+
+    /** メモリ上の変更をすべてファイルに書き戻す */
+    @Override
+    public void close() throws IOException {
+        List<Gradebook> dirty = new ArrayList<>();
+        synchronized (this) {
+            for (Gradebook gb : resident.values()) if (gb.dirty) dirty.add(gb);
+            for (Gradebook gb : saving.values()) if (!dirty.contains(gb)) dirty.add(gb);
+        }
+        try {
+            saveAll(dirty);
+        } catch (SQLException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    // ── 内部 ────────────────────────────────────────────────
+
+    private String fileOf(String name) {
+        ClassSummary s = summaries.get(name);
+        if (s == null) throw new IllegalArgumentException("クラスがありません: " + name);
+        return s.file();
+    }
+
+    /** 上限を超えた分をメモリから外し、書き戻しが必要なものを返す（ロックを持って呼ぶ） */
+    private List<Gradebook> takeOverflow() {
+        List<Gradebook> evicted = new ArrayList<>();
+        Iterator<Gradebook> it = resident.values().iterator();
+        while (resident.size() > maxResident && it.hasNext()) {
+            Gradebook eldest = it.next();
+            it.remove();
+            Metrics.count("workspace.evictions", 1);
+            if (eldest.dirty) {
+                saving.put(eldest.name, eldest);
+                evicted.add(eldest);
+            }
+        }
+        return evicted;
+    }
+
+    private void saveAll(List<Gradebook> gradebooks) throws SQLException, IOException {
+        for (Gradebook gb : gradebooks) save(gb);
+    }
+
+    /** ロックを持たずに呼ぶ（書き込む名簿と科目はロック内で取り出す） */
+    private void save(Gradebook gb) throws SQLException, IOException {
+        List<Student> students;
+        Map<String, Integer> subjects;
+        long version;
+        String file;
+        synchronized (this) {
+            students = gb.students;
+            subjects = gb.subjectTotalDays;
+            version = gb.version;
+            file = fileOf(gb.name);
+        }
+        long t0 = Metrics.start();
+        try (GradeRepository repo = new GradeRepository(dir.resolve(file).toFile())) {
+            repo.replaceAll(subjects, students);
+        }
+        synchronized (this) {
+            // 保存中に更新されていれば dirty のまま残し、次の書き戻し（close を含む）で書く
+            if (gb.version == version) {
+                gb.dirty = false;
+                saving.remove(gb.name, gb);
+            }
+            writeIndex();
+        }
+        Metrics.stop("workspace.save", t0);
+    }
+
+    /** クラス名に使えない文字があってもよいよう、ファイル名は連番にする */
+    private String newFileName() {
+        Set<String> used = new HashSet<>();
+        for (ClassSummary s : summaries.values()) used.add(s.file());
+        int n = summaries.size() + 1;
+        while (used.contains("class-" + n)) n++;
+        return "class-" + n;
+    }
+
+    /** 集計を一時ファイルに書いてから置き換える */
+    private void writeIndex() throws IOException {
+        Files.createDirectories(dir);
+        Path tmp = dir.resolve("workspace.tsv.tmp");
+        List<String> lines = new ArrayList<>();
+        for (ClassSummary s : summaries.values()) lines.add(s.toLine());
+        Files.write(tmp, lines, StandardCharsets.UTF_8);
+        Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,349 @@
+package com.grademanager;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 列指向エクスポーター（集計用の .gmc 形式）
+ *
+ * 1科目1行の縦持ち（tidy）レイアウト:
+ *   studentId, subject, totalDays, attendedDays, testScore, composite, grade
+ *
+ * ファイル構成:
+ *   "GMC1" | 科目辞書 | 評価辞書 | 行グループ数 N | 行グループ × N | フッター(各行グループの位置) | フッター位置 | "GMC1"
+ *
+ * 行グループ（最大 {@link #GROUP_STUDENTS} 名分）の中は科目順 → 生徒順に並べるため、
+ * 科目・総授業数はほぼ1ランになり、評価もランレングスで小さくなる。
+ * 各列は個別に Deflate 圧縮し長さを前置するので、読み手は必要な列だけ展開できる。
+ */
+public class ColumnarExporter {
+
+    static final byte[] MAGIC = "GMC1".getBytes(StandardCharsets.US_ASCII);
+    /** 1行グループあたりの生徒数 */
+    static final int GROUP_STUDENTS = 4096;
+    static final String[] GRADES = {"秀", "優", "良", "可", "不可", "不可(出席)", "-"};
+
+    static final int COL_STUDENT_ID = 0;
+    static final int COL_SUBJECT    = 1;
+    static final int COL_TOTAL      = 2;
+    static final int COL_ATTENDED   = 3;
+    static final int COL_TEST       = 4;
+    static final int COL_COMPOSITE  = 5;
+    static final int COL_GRADE      = 6;
+    static final int COLUMN_COUNT   = 7;
+
+    private final Iterable<Student> students;
+    private final int studentCount;
+    private final List<String> subjects;
+
+    /**
+     * 画面の名簿から書き出す場合。書き出し中も編集できるよう、呼び出し側（FXスレッド）で
+     * 生徒と科目記録を複製してからバックグラウンドで書き出す想定
+     */
+    public ColumnarExporter(List<Student> students, Map<String, Integer> subjectTotalDays) {
+        this(copyOf(students), students.size(), subjectTotalDays);
+    }
+
+    /** 生徒を順に流し込む場合（生成データなど、全員をメモリに載せない。ほかから変更されない生徒に限る） */
+    public ColumnarExporter(Iterable<Student> students, int studentCount, Map<String, Integer> subjectTotalDays) {
+        this.students = students;
+        this.studentCount = studentCount;
+        this.subjects = new ArrayList<>(subjectTotalDays.keySet());
+    }
+
+    private static List<Student> copyOf(List<Student> students) {
+        List<Student> copies = new ArrayList<>(students.size());
+        for (Student s : students) copies.add(s.copy());
+        return copies;
+    }
+
+    /** 書き出したデータ行数（生徒×科目）を返す */
+    public long export(File file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16)) {
+            return export(out);
+        }
+    }
+
+    public long export(OutputStream os) throws IOException {
+        CountingOutputStream counter = new CountingOutputStream(os);
+        DataOutputStream out = new DataOutputStream(counter);
+        out.write(MAGIC);
+        writeStrings(out, subjects);
+        writeStrings(out, Arrays.asList(GRADES));
+        out.writeInt((studentCount + GROUP_STUDENTS - 1) / GROUP_STUDENTS);
+
+        List<Long> groupOffsets = new ArrayList<>();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        List<Student> group = new ArrayList<>(Math.min(studentCount, GROUP_STUDENTS));
+        Iterator<Student> it = students.iterator();
+        long rows = 0;
+        for (int from = 0; from < studentCount; from += GROUP_STUDENTS) {
+            group.clear();
+            while (group.size() < GROUP_STUDENTS && it.hasNext()) group.add(it.next());
+            out.flush();
+            groupOffsets.add(counter.count);
+            rows += writeGroup(out, group, deflater);
+        }
+        deflater.end();
+
+        out.flush();
+        long footerPos = counter.count;
+        out.writeInt(groupOffsets.size());
+        for (long off : groupOffsets) out.writeLong(off);
+        out.writeLong(footerPos);
+        out.write(MAGIC);
+        out.flush();
+        return rows;
+    }
+
+    private long writeGroup(DataOutputStream out, List<Student> group, Deflater deflater) throws IOException {
+        ColumnBuffer ids = new ColumnBuffer(), subj = new ColumnBuffer(), total = new ColumnBuffer(),
+                     att = new ColumnBuffer(), test = new ColumnBuffer(), comp = new ColumnBuffer(),
+                     grade = new ColumnBuffer();
+
+        // 学籍番号はグループ内辞書 + インデックス
+        ids.writeVarInt(group.size());
+        for (Student st : group) ids.out.writeUTF(st.getStudentId());
+
+        int rows = 0;
+        for (int s = 0; s < subjects.size(); s++) {
+            String subject = subjects.get(s);
+            for (int i = 0; i < group.size(); i++) {
+                Student.SubjectRecord rec = group.get(i).getRecord(subject);
+                if (rec == null) continue;
+                ids.writeVarInt(i);
+                subj.rle(s);
+                total.rle(rec.totalDays);
+                att.writeVarInt(rec.attendedDays);
+                test.out.writeDouble(rec.testScore != null ? rec.testScore : Double.NaN);
+                Double c = rec.compositeScore();
+                comp.out.writeDouble(c != null ? c : Double.NaN);
+                grade.rle(gradeIndex(rec.gradeLabel()));
+                rows++;
+            }
+        }
+
+        out.writeInt(rows);
+        for (ColumnBuffer col : new ColumnBuffer[]{ids, subj, total, att, test, comp, grade}) {
+            col.finishRle();
+            byte[] raw = col.bytes.toByteArray();
+            byte[] packed = deflate(raw, deflater);
+            out.writeInt(raw.length);
+            out.writeInt(packed.length);
+            out.write(packed);
+        }
+        return rows;
+    }
+
+    // ═══════════════════════ Reader ═══════════════════════
+
+    /** 1行分のデータ（読み出し用） */
+    public record Row(String studentId, String subject, int totalDays, int attendedDays,
+                      Double testScore, Double composite, String grade) {}
+
+    /**
+     * .gmc 形式の読み手。
+     * 列ごとに長さが前置されているので、必要な列以外は展開せず読み飛ばす。
+     */
+    public static class Reader implements Closeable {
+        private final DataInputStream in;
+        private final List<String> subjects;
+        private final List<String> grades;
+        private int remainingGroups;
+
+        public Reader(File file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+            byte[] magic = in.readNBytes(MAGIC.length);
+            if (!Arrays.equals(magic, MAGIC)) { in.close(); throw new IOException("GMC形式のファイルではありません"); }
+            this.subjects = readStrings(in);
+            this.grades = readStrings(in);
+            this.remainingGroups = in.readInt();
+        }
+
+        public List<String> subjects() { return subjects; }
+
+        /** 全列を展開して1行ずつ渡す */
+        public long forEach(Consumer<Row> sink) throws IOException {
+            long total = 0;
+            int rows;
+            while ((rows = nextGroupRows()) >= 0) {
+                DataInputStream[] cols = new DataInputStream[COLUMN_COUNT];
+                for (int c = 0; c < COLUMN_COUNT; c++) cols[c] = readColumn();
+
+                int n = readVarInt(cols[COL_STUDENT_ID]);
+                String[] ids = new String[n];
+                for (int i = 0; i < n; i++) ids[i] = cols[COL_STUDENT_ID].readUTF();
+                RleDecoder subj = new RleDecoder(cols[COL_SUBJECT]);
+                RleDecoder tot  = new RleDecoder(cols[COL_TOTAL]);
+                RleDecoder grd  = new RleDecoder(cols[COL_GRADE]);
+                for (int r = 0; r < rows; r++) {
+                    double t = cols[COL_TEST].readDouble();
+                    double c = cols[COL_COMPOSITE].readDouble();
+                    sink.accept(new Row(ids[readVarInt(cols[COL_STUDENT_ID])],
+                            subjects.get(subj.next()), tot.next(), readVarInt(cols[COL_ATTENDED]),
+                            Double.isNaN(t) ? null : t, Double.isNaN(c) ? null : c,
+                            grades.get(grd.next())));
+                }
+                total += rows;
+            }
+            return total;
+        }
+
+        /** 評価列と科目列だけを展開し、科目ごとの評価分布を数える */
+        public Map<String, Map<String, Long>> gradeCountsBySubject() throws IOException {
+            Map<String, Map<String, Long>> result = new LinkedHashMap<>();
+            for (String s : subjects) result.put(s, new LinkedHashMap<>());
+            int rows;
+            while ((rows = nextGroupRows()) >= 0) {
+                DataInputStream subjCol = null, gradeCol = null;
+                for (int c = 0; c < COLUMN_COUNT; c++) {
+                    if (c == COL_SUBJECT)     subjCol  = readColumn();
+                    else if (c == COL_GRADE)  gradeCol = readColumn();
+                    else                      skipColumn();
+                }
+                RleDecoder subj = new RleDecoder(subjCol), grd = new RleDecoder(gradeCol);
+                for (int r = 0; r < rows; r++) {
+                    result.get(subjects.get(subj.next())).merge(grades.get(grd.next()), 1L, Long::sum);
+                }
+            }
+            return result;
+        }
+
+        /** 次の行グループの行数。全グループを読み終えたら -1 */
+        private int nextGroupRows() throws IOException {
+            if (remainingGroups == 0) return -1;
+            remainingGroups--;
+            return in.readInt();
+        }
+
+        private DataInputStream readColumn() throws IOException {
+            int rawLen = in.readInt();
+            int packedLen = in.readInt();
+            if (rawLen < 0 || packedLen < 0) throw new IOException("列データが壊れています（長さが不正）");
+            byte[] packed = in.readNBytes(packedLen);
+            if (packed.length < packedLen) throw new EOFException("列データが途中で切れています");
+            byte[] raw = inflate(packed, rawLen);
+            return new DataInputStream(new ByteArrayInputStream(raw));
+        }
+
+        private void skipColumn() throws IOException {
+            in.readInt();
+            in.skipNBytes(in.readInt());
+        }
+
+        @Override public void close() throws IOException { in.close(); }
+    }
+
+    // ═══════════════════════ Encoding Helpers ═══════════════════════
+
+    /** 1列分のバッファ（可変長整数・ランレングス対応） */
+    private static class ColumnBuffer {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        private int runValue, runLength;
+
+        void writeVarInt(int v) throws IOException { ColumnarExporter.writeVarInt(out, v); }
+
+        /** (ラン長, 値) の組で書く */
+        void rle(int v) throws IOException {
+            if (runLength > 0 && v == runValue) { runLength++; return; }
+            finishRle();
+            runValue = v; runLength = 1;
+        }
+
+        void finishRle() throws IOException {
+            if (runLength == 0) return;
+            writeVarInt(runLength); writeVarInt(runValue);
+            runLength = 0;
+        }
+    }
+
+    private static class RleDecoder {
+        private final DataInputStream in;
+        private int value, remaining;
+
+        RleDecoder(DataInputStream in) { this.in = in; }
+
+        int next() throws IOException {
+            if (remaining == 0) { remaining = readVarInt(in); value = readVarInt(in); }
+            remaining--;
+            return value;
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count;
+        CountingOutputStream(OutputStream out) { super(out); }
+        @Override public void write(int b) throws IOException { out.write(b); count++; }
+        @Override public void write(byte[] b, int off, int len) throws IOException { out.write(b, off, len); count += len; }
+    }
+
+    static void writeVarInt(DataOutputStream out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) { out.writeByte((v & 0x7F) | 0x80); v >>>= 7; }
+        out.writeByte(v);
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException {
+        int v = 0, shift = 0, b;
+        do {
+            b = in.readUnsignedByte();
+            v |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return v;
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String v : values) out.writeUTF(v);
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        List<String> values = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) values.add(in.readUTF());
+        return values;
+    }
+
+    private static int gradeIndex(String g) {
+        for (int i = 0; i < GRADES.length; i++) if (GRADES[i].equals(g)) return i;
+        return GRADES.length - 1;
+    }
+
+    private static byte[] deflate(byte[] raw, Deflater deflater) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+        byte[] buf = new byte[8192];
+        while (!deflater.finished()) bos.write(buf, 0, deflater.deflate(buf));
+        return bos.toByteArray();
+    }
+
+    /** 壊れた・切れたデータでは IOException（入力不足のまま展開を繰り返さない） */
+    static byte[] inflate(byte[] packed, int rawLen) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(packed);
+            byte[] raw = new byte[rawLen];
+            int n = 0;
+            while (n < rawLen && !inflater.finished()) {
+                int k = inflater.inflate(raw, n, rawLen - n);
+                if (k == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new EOFException("列データが途中で切れています");
+                n += k;
+            }
+            if (n < rawLen) throw new IOException("列データが壊れています（展開後の長さが不足）");
+            return raw;
+        } catch (DataFormatException ex) {
+            throw new IOException("列データが壊れています", ex);
+        } finally {
+            inflater.end();
+        }
+    }
+}
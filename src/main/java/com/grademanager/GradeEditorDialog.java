@@ -0,0 +1,189 @@
+package com.grademanager;
+
+import javafx.geometry.*;
+import javafx.scene.control.*;
+import javafx.scene.layout.*;
+
+import java.util.*;
+
+/**
+ * 成績編集ダイアログ（出席日数 + テスト点）
+ *
+ * 一度作ったダイアログ・入力欄・ラベル・リスナーを使い回し、開くたびに
+ * 選択中の生徒の値を入れ直すだけにする。科目が増減したときだけ行を追加・削除する。
+ */
+class GradeEditorDialog {
+
+    /** 1科目分の行（部品とリスナーは行の生成時に1回だけ作る） */
+    private static final class Row {
+        final Label subjectLbl = new Label();
+        final Label totalLbl   = new Label();
+        final TextField attendedField = new TextField();
+        final TextField testField     = new TextField();
+        final Label rateLabel  = new Label("--");
+        final Label attPtLabel = new Label("--");
+        final Label compLabel  = new Label("--");
+        final Label gradeLabel = new Label("--");
+        int total = -1;
+
+        Row(String subject) {
+            subjectLbl.setText(subject);
+            subjectLbl.setMinWidth(90);
+            totalLbl.setMinWidth(60); totalLbl.setAlignment(Pos.CENTER);
+            attendedField.setPrefWidth(65);
+            testField.setPrefWidth(65);
+            testField.setPromptText("0〜100");
+            rateLabel.setMinWidth(55);  rateLabel.setAlignment(Pos.CENTER);
+            attPtLabel.setMinWidth(55); attPtLabel.setAlignment(Pos.CENTER);
+            compLabel.setMinWidth(55);  compLabel.setAlignment(Pos.CENTER);
+            gradeLabel.setMinWidth(50); gradeLabel.setAlignment(Pos.CENTER);
+            attendedField.textProperty().addListener((o, ov, nv) -> updatePreview());
+            testField.textProperty().addListener((o, ov, nv) -> updatePreview());
+        }
+
+        void setTotal(int total) {
+            if (this.total == total) return;
+            this.total = total;
+            totalLbl.setText(total + "回");
+            attendedField.setPromptText("0〜" + total);
+        }
+
+        /** リアルタイム計算 */
+        void updatePreview() {
+            try {
+                int    att  = Integer.parseInt(attendedField.getText().trim());
+                double rate = (double) att / total;
+                double attPt = rate * 100.0;
+                rateLabel.setText(String.format("%.0f%%", rate * 100));
+                attPtLabel.setText(String.format("%.1f", attPt));
+
+                boolean sufficient = rate >= 0.8;
+                String rateColor = sufficient ? "#27ae60" : "#e74c3c";
+                rateLabel.setStyle("-fx-text-fill: " + rateColor + "; -fx-font-weight: bold;");
+                attPtLabel.setStyle("-fx-text-fill: " + rateColor + ";");
+
+                String testStr = testField.getText().trim();
+                if (!testStr.isEmpty()) {
+                    double test = Double.parseDouble(testStr);
+                    double comp = attPt * 0.5 + test * 0.5;
+                    compLabel.setText(String.format("%.1f", comp));
+                    String g = sufficient ? Student.scoreToGrade(comp) : "不可(出席)";
+                    gradeLabel.setText(g);
+                    gradeLabel.setStyle(MainApp.gradeStyle(g) + " -fx-font-weight: bold;");
+                    compLabel.setStyle("-fx-font-weight: bold;");
+                } else {
+                    compLabel.setText("--"); gradeLabel.setText("--");
+                    compLabel.setStyle(""); gradeLabel.setStyle("");
+                }
+            } catch (NumberFormatException ex) {
+                rateLabel.setText("--"); attPtLabel.setText("--");
+                compLabel.setText("--"); gradeLabel.setText("--");
+                rateLabel.setStyle(""); attPtLabel.setStyle("");
+            }
+        }
+    }
+
+    private final Dialog<ButtonType> dialog = new Dialog<>();
+    private final GridPane grid = new GridPane();
+    /** 科目名 → 行（表示順） */
+    private final Map<String, Row> rows = new LinkedHashMap<>();
+
+    GradeEditorDialog() {
+        dialog.setHeaderText("各科目の出席日数とテスト点を入力してください");
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+
+        VBox container = new VBox(10);
+        container.setPadding(new Insets(16));
+        grid.setHgap(10); grid.setVgap(9);
+
+        ScrollPane scroll = new ScrollPane(grid);
+        scroll.setFitToWidth(true); scroll.setPrefHeight(340);
+        scroll.setStyle("-fx-background-color: transparent;");
+
+        container.getChildren().add(scroll);
+        dialog.getDialogPane().setContent(container);
+        dialog.getDialogPane().setPrefWidth(680);
+    }
+
+    /**
+     * 選択中の生徒を表示して入力を待つ。OK なら true。
+     * 科目構成が前回と同じなら、行は作り直さず値だけを入れ直す。
+     */
+    boolean showAndWait(Student sel, Map<String, Integer> subjectTotalDays) {
+        syncRows(subjectTotalDays);
+        dialog.setTitle("成績編集 — " + sel.getName());
+        for (Map.Entry<String, Row> e : rows.entrySet()) {
+            Student.SubjectRecord rec = sel.getOrCreateRecord(e.getKey(), e.getValue().total);
+            Row row = e.getValue();
+            row.attendedField.setText(String.valueOf(rec.attendedDays));
+            row.testField.setText(rec.testScore != null ? String.format("%.0f", rec.testScore) : "");
+            row.updatePreview();
+        }
+        return dialog.showAndWait().filter(b -> b == ButtonType.OK).isPresent();
+    }
+
+    /** 入力値を生徒の記録に反映 */
+    void applyTo(Student sel, Map<String, Integer> subjectTotalDays) {
+        for (Map.Entry<String, Row> e : rows.entrySet()) {
+            String subject = e.getKey();
+            int total = subjectTotalDays.getOrDefault(subject, 0);
+            Student.SubjectRecord rec = sel.getOrCreateRecord(subject, total);
+            try {
+                int att = Integer.parseInt(e.getValue().attendedField.getText().trim());
+                rec.attendedDays = Math.max(0, Math.min(total, att));
+            } catch (NumberFormatException ignored) {}
+            String testStr = e.getValue().testField.getText().trim();
+            if (!testStr.isEmpty()) {
+                try {
+                    rec.testScore = Math.max(0, Math.min(100, Double.parseDouble(testStr)));
+                } catch (NumberFormatException ignored) {}
+            } else {
+                rec.testScore = null;
+            }
+        }
+    }
+
+    /** 科目の増減・並びの変化があったときだけ行を追加・削除して並べ直す */
+    private void syncRows(Map<String, Integer> subjectTotalDays) {
+        if (!new ArrayList<>(rows.keySet()).equals(new ArrayList<>(subjectTotalDays.keySet()))) {
+            Map<String, Row> reordered = new LinkedHashMap<>();
+            for (String subject : subjectTotalDays.keySet()) {
+                Row row = rows.remove(subject);
+                reordered.put(subject, row != null ? row : new Row(subject));
+            }
+            rows.clear();
+            rows.putAll(reordered);
+            layoutGrid();
+        }
+        subjectTotalDays.forEach((subject, total) -> rows.get(subject).setTotal(total));
+    }
+
+    private void layoutGrid() {
+        grid.getChildren().clear();
+
+        // 列ヘッダー
+        grid.add(MainApp.boldLabel("科目",      90),  0, 0);
+        grid.add(MainApp.boldLabel("総授業数",  70),  1, 0);
+        grid.add(MainApp.boldLabel("出席日数",  70),  2, 0);
+        grid.add(MainApp.boldLabel("出席率",    60),  3, 0);
+        grid.add(MainApp.boldLabel("出席点",    60),  4, 0);
+        grid.add(MainApp.boldLabel("テスト点",  70),  5, 0);
+        grid.add(MainApp.boldLabel("総合点",    60),  6, 0);
+        grid.add(MainApp.boldLabel("評価",      55),  7, 0);
+        grid.add(new Separator(), 0, 1, 8, 1);
+
+        // 科目行
+        int r = 2;
+        for (Row row : rows.values()) {
+            grid.add(row.subjectLbl,    0, r);
+            grid.add(row.totalLbl,      1, r);
+            grid.add(row.attendedField, 2, r);
+            grid.add(row.rateLabel,     3, r);
+            grid.add(row.attPtLabel,    4, r);
+            grid.add(row.testField,     5, r);
+            grid.add(row.compLabel,     6, r);
+            grid.add(row.gradeLabel,    7, r);
+            r++;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.grademanager;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * 組み込みDB（H2・ファイル形式・同一プロセス内）による成績の保存先
+ *
+ * テーブル:
+ *   subject (name, total_days, position)
+ *   student (student_id, name)
+ *   record  (student_id, subject, total_days, attended_days, test_score, grade)
+ *
+ * 索引:
+ *   student.student_id（主キー）/ record (student_id, subject)（主キー）
+ *   record (subject, grade) … 科目ごとの評価分布・不可一覧の検索用
+ *
+ * 書き込みはプリペアドステートメントのバッチでまとめて送り、
+ * 読み込みは学籍番号順のページ単位で行うため、画面が全件を保持する必要はない。
+ */
+public class GradeRepository implements AutoCloseable {
+
+    /** 1回のバッチで送る件数 */
+    private static final int BATCH_SIZE = 1000;
+
+    private final Connection conn;
+
+    /** file は拡張子なしのパス（H2 が .mv.db を付ける） */
+    public GradeRepository(File file) throws SQLException {
+        String path = file.getAbsolutePath().replaceFirst("\\.mv\\.db$", "");
+        this.conn = DriverManager.getConnection("jdbc:h2:file:" + path);
+        createSchema();
+    }
+
+    /** DBファイルごとの付随データ（監査ログ・学期スナップショット）の置き場所（grades.mv.db なら grades.data） */
+    public static Path dataDir(File file) {
+        return Paths.get(file.getAbsolutePath().replaceFirst("\\.mv\\.db$", "") + ".data");
+    }
+
+    private void createSchema() throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE IF NOT EXISTS subject (" +
+                       "  name VARCHAR(100) PRIMARY KEY, total_days INT NOT NULL, position INT NOT NULL)");
+            st.execute("CREATE TABLE IF NOT EXISTS student (" +
+                       "  student_id VARCHAR(50) PRIMARY KEY, name VARCHAR(200) NOT NULL)");
+            st.execute("CREATE TABLE IF NOT EXISTS record (" +
+                       "  student_id VARCHAR(50) NOT NULL, subject VARCHAR(100) NOT NULL," +
+                       "  total_days INT NOT NULL, attended_days INT NOT NULL, test_score DOUBLE," +
+                       "  grade VARCHAR(16) NOT NULL," +
+                       "  PRIMARY KEY (student_id, subject)," +
+                       "  FOREIGN KEY (student_id) REFERENCES student(student_id) ON DELETE CASCADE)");
+            st.execute("CREATE INDEX IF NOT EXISTS idx_record_subject_grade ON record(subject, grade)");
+        }
+    }
+
+    // ── 科目 ────────────────────────────────────────────────
+
+    public void saveSubjects(Map<String, Integer> subjectTotalDays) throws SQLException {
+        inTransaction(() -> writeSubjects(subjectTotalDays));
+    }
+
+    private void writeSubjects(Map<String, Integer> subjectTotalDays) throws SQLException {
+        try (Statement st = conn.createStatement()) { st.execute("DELETE FROM subject"); }
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO subject (name, total_days, position) VALUES (?, ?, ?)")) {
+            int pos = 0;
+            for (Map.Entry<String, Integer> e : subjectTotalDays.entrySet()) {
+                ps.setString(1, e.getKey());
+                ps.setInt(2, e.getValue());
+                ps.setInt(3, pos++);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    public Map<String, Integer> loadSubjects() throws SQLException {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT name, total_days FROM subject ORDER BY position")) {
+            while (rs.next()) result.put(rs.getString(1), rs.getInt(2));
+        }
+        return result;
+    }
+
+    // ── 生徒 ────────────────────────────────────────────────
+
+    /** 生徒と全科目記録を保存（既存は上書き）。バッチでまとめて送る */
+    public void saveStudents(Collection<Student> students) throws SQLException {
+        inTransaction(() -> writeStudents(students));
+    }
+
+    /**
+     * 画面に表示中の1ページ分を保存する。loadedIds（そのページを読み込んだときの学籍番号）にない生徒は
+     * 新規とみなし、DBの他のページの生徒と学籍番号が重なれば上書きせずに失敗する
+     */
+    public void savePage(Collection<Student> page, Set<String> loadedIds) throws SQLException {
+        inTransaction(() -> {
+            try (PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM student WHERE student_id = ?")) {
+                for (Student s : page) {
+                    if (loadedIds.contains(s.getStudentId())) continue;
+                    ps.setString(1, s.getStudentId());
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next())
+                            throw new SQLException("学籍番号 " + s.getStudentId() + "（" + s.getName() + "）はDBの別の生徒が使っています");
+                    }
+                }
+            }
+            writeStudents(page);
+        });
+    }
+
+    /** 科目と名簿をまるごと入れ替える（名簿にいない生徒は削除される） */
+    public void replaceAll(Map<String, Integer> subjectTotalDays, Collection<Student> students) throws SQLException {
+        inTransaction(() -> {
+            try (Statement st = conn.createStatement()) { st.execute("DELETE FROM student"); }
+            writeSubjects(subjectTotalDays);
+            writeStudents(students);
+        });
+    }
+
+    private void writeStudents(Collection<Student> students) throws SQLException {
+        checkIds(students);
+        try (PreparedStatement stu = conn.prepareStatement(
+                 "MERGE INTO student (student_id, name) KEY (student_id) VALUES (?, ?)");
+             PreparedStatement del = conn.prepareStatement(
+                 "DELETE FROM record WHERE student_id = ?");
+             PreparedStatement rec = conn.prepareStatement(
+                 "INSERT INTO record (student_id, subject, total_days, attended_days, test_score, grade)" +
+                 " VALUES (?, ?, ?, ?, ?, ?)")) {
+            int pending = 0;
+            for (Student s : students) {
+                stu.setString(1, s.getStudentId());
+                stu.setString(2, s.getName());
+                stu.addBatch();
+                // 削除された科目の記録も消すため、生徒単位で入れ直す
+                del.setString(1, s.getStudentId());
+                del.addBatch();
+                for (Map.Entry<String, Student.SubjectRecord> e : s.getSubjectMap().entrySet()) {
+                    Student.SubjectRecord r = e.getValue();
+                    rec.setString(1, s.getStudentId());
+                    rec.setString(2, e.getKey());
+                    rec.setInt(3, r.totalDays);
+                    rec.setInt(4, r.attendedDays);
+                    if (r.testScore != null) rec.setDouble(5, r.testScore);
+                    else rec.setNull(5, Types.DOUBLE);
+                    rec.setString(6, r.gradeLabel());
+                    rec.addBatch();
+                }
+                if (++pending >= BATCH_SIZE) {
+                    stu.executeBatch(); del.executeBatch(); rec.executeBatch();
+                    pending = 0;
+                }
+            }
+            stu.executeBatch(); del.executeBatch(); rec.executeBatch();
+        }
+    }
+
+    /** 主キー違反で途中まで送ってから失敗しないよう、空・重複の学籍番号は書き込む前に弾く */
+    private static void checkIds(Collection<Student> students) throws SQLException {
+        Set<String> seen = new HashSet<>();
+        for (Student s : students) {
+            String id = s.getStudentId();
+            if (id == null || id.isBlank()) throw new SQLException("学籍番号が空の生徒がいます: " + s.getName());
+            if (!seen.add(id)) throw new SQLException("学籍番号が重複しています: " + id);
+        }
+    }
+
+    public void deleteStudent(String studentId) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM student WHERE student_id = ?")) {
+            ps.setString(1, studentId);
+            ps.executeUpdate();
+        }
+    }
+
+    public int countStudents() throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM student")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    /** 学籍番号順で offset 件目から limit 件を、科目記録付きで読む */
+    public List<Student> loadPage(int offset, int limit) throws SQLException {
+        Map<String, Student> page = new LinkedHashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT student_id, name FROM student ORDER BY student_id LIMIT ? OFFSET ?")) {
+            ps.setInt(1, limit);
+            ps.setInt(2, offset);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) page.put(rs.getString(1), new Student(rs.getString(1), rs.getString(2)));
+            }
+        }
+        if (page.isEmpty()) return new ArrayList<>();
+
+        // ページ内の学籍番号範囲の記録を主キー索引でまとめて読む
+        String first = page.keySet().iterator().next();
+        String last = first;
+        for (String id : page.keySet()) last = id;
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT r.student_id, r.subject, r.total_days, r.attended_days, r.test_score" +
+                " FROM record r LEFT JOIN subject s ON s.name = r.subject" +
+                " WHERE r.student_id BETWEEN ? AND ? ORDER BY r.student_id, s.position")) {
+            ps.setString(1, first);
+            ps.setString(2, last);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Student st = page.get(rs.getString(1));
+                    if (st == null) continue;
+                    Student.SubjectRecord r = st.getOrCreateRecord(rs.getString(2), rs.getInt(3));
+                    r.attendedDays = rs.getInt(4);
+                    double score = rs.getDouble(5);
+                    r.testScore = rs.wasNull() ? null : score;
+                }
+            }
+        }
+        return new ArrayList<>(page.values());
+    }
+
+    // ── 集計 ────────────────────────────────────────────────
+
+    /** 科目ごとの評価分布（(subject, grade) 索引のみで数える） */
+    public Map<String, Long> countByGrade(String subject) throws SQLException {
+        Map<String, Long> result = new LinkedHashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT grade, COUNT(*) FROM record WHERE subject = ? GROUP BY grade ORDER BY grade")) {
+            ps.setString(1, subject);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) result.put(rs.getString(1), rs.getLong(2));
+            }
+        }
+        return result;
+    }
+
+    // ── 内部 ────────────────────────────────────────────────
+
+    @FunctionalInterface
+    private interface SqlWork { void run() throws SQLException; }
+
+    private void inTransaction(SqlWork work) throws SQLException {
+        boolean auto = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            work.run();
+            conn.commit();
+        } catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(auto);
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        conn.close();
+    }
+}
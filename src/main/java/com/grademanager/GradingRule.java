@@ -0,0 +1,48 @@
+package com.grademanager;
+
+/**
+ * 評価の判定基準
+ *
+ *   attendanceCut … 出席率がこれ未満なら「不可(出席)」（現行 0.8）
+ *   passScore     … 総合点がこれ未満なら「不可」（現行 60 = 59点以下は不可）
+ *
+ * 良/優/秀の閾値（70/80/90）は変えない。{@link #CURRENT} は Student.SubjectRecord#gradeLabel と同じ判定になる。
+ */
+public record GradingRule(double attendanceCut, double passScore) {
+
+    /** 現行の基準 */
+    public static final GradingRule CURRENT = new GradingRule(0.8, 60);
+
+    public GradingRule {
+        if (attendanceCut < 0 || attendanceCut > 1) throw new IllegalArgumentException("出席率の下限は0〜1で指定してください: " + attendanceCut);
+        if (passScore < 0 || passScore > 100) throw new IllegalArgumentException("合格点は0〜100で指定してください: " + passScore);
+    }
+
+    /** この基準での評価文字列（未入力は "-"） */
+    public String grade(Student.SubjectRecord r) {
+        if (r.attendanceRate() < attendanceCut) return "不可(出席)";
+        Double comp = r.compositeScore();
+        if (comp == null) return "-";
+        // 合格点は良/優/秀の閾値より上に動かされることもあるので、先に判定する
+        if (comp < passScore) return "不可";
+        if (comp >= 90) return "秀";
+        if (comp >= 80) return "優";
+        if (comp >= 70) return "良";
+        return "可";
+    }
+
+    /** 不可（出席不足を含む）か */
+    public static boolean isFail(String grade) {
+        return grade.startsWith("不可");
+    }
+
+    /** 秀/優/良/可 のいずれかか（未入力の "-" は含まない） */
+    public static boolean isPass(String grade) {
+        return !isFail(grade) && !grade.equals("-");
+    }
+
+    @Override
+    public String toString() {
+        return String.format("出席%.0f%%以上・%.0f点以上で合格", attendanceCut * 100, passScore);
+    }
+}
@@ -0,0 +1,11 @@
+package com.grademanager;
+
+/**
+ * シェード済み JAR 用の起動クラス
+ *
+ * Application を継承したクラスを直接 Main-Class にすると、クラスパス起動時に
+ * 「JavaFX runtime components are missing」で起動できないため、ここから委譲する。
+ */
+public class Launcher {
+    public static void main(String[] args) { MainApp.main(args); }
+}
@@ -1,41 +1,103 @@
 package com.grademanager;
 
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.*;
+import javafx.concurrent.Task;
+import javafx.event.ActionEvent;
 import javafx.geometry.*;
 import javafx.scene.*;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.text.*;
 import javafx.stage.*;
 
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 public class MainApp extends Application {
 
     private final ObservableList<Student> students = FXCollections.observableArrayList();
     private TableView<Student> tableView;
     private Label statsLabel;
+    /** 右側の統計パネル（参考カードは初回描画の後に足す） */
+    private VBox statsPanel;
+    private HBox toolbar;
 
     // 科目名 → 総授業日数
     private final Map<String, Integer> subjectTotalDays = new LinkedHashMap<>();
 
+    // 名簿ごと（起動時の名簿・各クラス・各DB）の学期スナップショットと監査ログ。
+    // 表示中の名簿のものを termHistory / auditLog に置く（useRosterScope で切り替え）
+    private final Map<Path, TermHistory> termHistories = new ConcurrentHashMap<>();
+    private final Map<Path, AuditLog> auditLogs = new HashMap<>();
+    private TermHistory termHistory;
+    private AuditLog auditLog;
+
+    // 組み込みDB（開いている間は students に1ページ分だけを載せる）
+    private static final int PAGE_SIZE = 500;
+    private GradeRepository repository;
+    private int pageOffset;
+    private int pageTotal;
+    /** DB全体の科目別評価分布（ページを読むたびに (subject, grade) 索引から数え直す） */
+    private Map<String, Map<String, Long>> dbGradeCounts = Map.of();
+    /** 表示中のページを読み込んだときの学籍番号（ページに追加した生徒と区別する） */
+    private Set<String> pageIds = Set.of();
+    private HBox pageBar;
+    private Label pageLabel;
+
+    // 複数クラスのワークスペース（初回のクラスメニュー表示時に開く）。activeClass が null なら未保存の名簿
+    private ClassWorkspace workspace;
+    private String activeClass;
+    /** 表示中のクラスをワークスペースに戻してから名簿を編集したか（編集がなければ書き戻さない） */
+    private boolean rosterEdited;
+    private MenuButton classBtn;
+
+    // 必要点の逆算結果（表示オフのときは null）
+    private WhatIfSolver.Result whatIf;
+
+    // 使い回すダイアログ（初回表示時に作る）
+    private GradeEditorDialog gradeEditor;
+    private SubjectManagerDialog subjectManager;
+
+    // 外部ツール向けの変更イベント配信（購読者がいなければイベントを作らない）
+    private final ChangeFeed changeFeed = new ChangeFeed();
+
     @Override
     public void start(Stage primaryStage) {
         primaryStage.setTitle("📚 成績管理アプリ");
+        // 起動時の名簿の学期スナップショットは、成績データと一緒にバックグラウンドで読む
+        auditLog = auditLogs.computeIfAbsent(AuditLog.defaultDir(), AuditLog::new);
+        termHistory = new TermHistory();
+
+        // 負荷試験用: --students=N [--subjects=M] [--seed=S] で生成データを使う
+        SampleDataGenerator generator = createGenerator(getParameters().getNamed());
+
+        // -Dgrademanager.feed.file / -Dgrademanager.feed.port が指定されていれば変更フィードを書き出す
+        changeFeed.attachConfiguredSinks();
 
         // 初期科目設定
-        subjectTotalDays.put("数学", 20);
-        subjectTotalDays.put("英語", 18);
-        subjectTotalDays.put("国語", 20);
-        subjectTotalDays.put("理科", 16);
-        subjectTotalDays.put("社会", 15);
+        if (generator != null) {
+            subjectTotalDays.putAll(generator.getSubjectTotalDays());
+        } else {
+            subjectTotalDays.put("数学", 20);
+            subjectTotalDays.put("英語", 18);
+            subjectTotalDays.put("国語", 20);
+            subjectTotalDays.put("理科", 16);
+            subjectTotalDays.put("社会", 15);
+        }
 
         BorderPane root = new BorderPane();
         root.setStyle("-fx-background-color: #f0f4f8;");
@@ -43,13 +105,99 @@ public class MainApp extends Application {
         root.setCenter(createMainContent());
         root.setBottom(createBottomBar());
 
-        addSampleData();
+        Metrics.setStudentCount(students::size);
 
         Scene scene = new Scene(root, 1280, 740);
         primaryStage.setScene(scene);
         primaryStage.setMinWidth(960);
         primaryStage.setMinHeight(580);
+        reportFirstFrame(scene);
+        // 保存に失敗したら、ウィンドウを閉じる前に知らせる（stop() からはもう知らせられない）
+        primaryStage.setOnCloseRequest(e -> { if (!saveBeforeExit()) e.consume(); });
         primaryStage.show();
+
+        // 成績データは画面表示と並行してバックグラウンドで読み込む
+        loadInitialData(generator, getParameters().getUnnamed().contains("--exit-after-startup"));
+    }
+
+    // ═══════════════════════ Startup ═══════════════════════
+
+    /** 最初のレイアウトパルス（初回描画）までの起動時間を記録し、その後で参考カードを組み立てる */
+    private void reportFirstFrame(Scene scene) {
+        Runnable[] listener = new Runnable[1];
+        boolean[] done = {false};
+        listener[0] = () -> {
+            if (done[0]) return;
+            done[0] = true;
+            recordStartup("startup.firstFrame");
+            // パルス処理中にリスナー一覧を変更しないよう、解除は次の機会に行う
+            Platform.runLater(() -> {
+                scene.removePostLayoutPulseListener(listener[0]);
+                statsPanel.getChildren().addAll(createReferenceCards());
+            });
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+    }
+
+    /** startNanos から次のレイアウトパルス（CSS・レイアウト・セル更新）の完了までを name のタイマーに記録 */
+    private void stopAfterNextPulse(String name, long startNanos) {
+        if (!Metrics.ENABLED) return;
+        Scene scene = tableView.getScene();
+        Runnable[] listener = new Runnable[1];
+        boolean[] done = {false};
+        listener[0] = () -> {
+            if (done[0]) return;
+            done[0] = true;
+            Metrics.stop(name, startNanos);
+            Platform.runLater(() -> scene.removePostLayoutPulseListener(listener[0]));
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+        Platform.requestNextPulse();
+    }
+
+    /**
+     * 表示する名簿を切り替えたときに、その名簿の学期スナップショットと監査ログ（dir に置く）に切り替える。
+     * 監査ログは同じファイルに2つの書き込みスレッドが付かないよう、一度開いたら終了まで開いたままにする
+     */
+    private void useRosterScope(Path dir, TermHistory loaded) {
+        termHistory = termHistories.computeIfAbsent(dir, d -> loaded);
+        auditLog = auditLogs.computeIfAbsent(dir, AuditLog::new);
+    }
+
+    /** バックグラウンドで呼ぶ。dir の学期スナップショット（読み込み済みならそれ、なければファイルから） */
+    private TermHistory readTermHistory(Path dir) throws IOException {
+        TermHistory loaded = termHistories.get(dir);
+        return loaded != null ? loaded : TermHistory.load(dir.resolve(TermHistory.FILE_NAME));
+    }
+
+    /** バックグラウンドで読んだ名簿などと、その名簿の学期スナップショット */
+    private record WithTerms<T>(T value, TermHistory terms) {}
+
+    private void loadInitialData(SampleDataGenerator generator, boolean exitAfterStartup) {
+        statsLabel.setText("成績データを読み込み中…");
+        Map<String, Integer> days = new LinkedHashMap<>(subjectTotalDays);
+        // 読み込み結果で名簿を置き換えるので、それまでの追加・編集・DBやクラスの切り替えはできないようにする
+        Path dir = AuditLog.defaultDir();
+        runInBackground("initial-load", toolbar,
+            () -> new WithTerms<>(generator != null ? generateStudents(generator) : buildSampleData(days),
+                                  readTermHistory(dir)),
+            loaded -> {
+                useRosterScope(dir, loaded.terms());
+                students.setAll(loaded.value());
+                changeFeed.rosterLoaded("起動時の名簿", students.size());
+                updateStats();
+                recordStartup("startup.dataLoaded");
+                // AppCDS アーカイブ作成（-XX:ArchiveClassesAtExit）用の試運転
+                if (exitAfterStartup) Platform.exit();
+            });
+    }
+
+    /** JVM起動からの経過時間を計測に記録し、-Dgrademanager.startup.report=true なら表示 */
+    private void recordStartup(String phase) {
+        long uptimeMs = ManagementFactory.getRuntimeMXBean().getUptime();
+        Metrics.record(phase, uptimeMs * 1_000_000L);
+        if (Boolean.getBoolean("grademanager.startup.report"))
+            System.out.printf("%s: %d ms%n", phase, uptimeMs);
     }
 
     // ═══════════════════════ Header ═══════════════════════
@@ -93,23 +241,51 @@ public class MainApp extends Application {
         VBox box = new VBox(10);
         box.setPadding(new Insets(8));
 
-        HBox toolbar = new HBox(8);
+        toolbar = new HBox(8);
         toolbar.setAlignment(Pos.CENTER_LEFT);
 
         Button addBtn      = createButton("＋ 生徒追加",       "#27ae60");
         Button editBtn     = createButton("✏ 成績編集",        "#2980b9");
         Button subjectBtn  = createButton("⚙ 科目管理",        "#e67e22");
         Button deleteBtn   = createButton("✕ 削除",            "#e74c3c");
+        Button termBtn     = createButton("📅 学期保存",        "#7f8c8d");
+        Button whatIfBtn   = createButton("🎯 必要点",          "#c0392b");
+        Button historyBtn  = createButton("🕘 変更履歴",        "#7f8c8d");
+        Button regradeBtn  = createButton("⚖ 再判定",          "#d35400");
         Button exportBtn   = createButton("⬇ CSVエクスポート", "#8e44ad");
+        Button xlsxBtn     = createButton("⬇ Excelエクスポート", "#16a085");
+        Button gmcBtn      = createButton("⬇ 集計用エクスポート", "#34495e");
+        Button reportBtn   = createButton("⬇ 成績表（HTML）",   "#2c3e50");
 
         addBtn.setOnAction(e     -> showAddStudentDialog());
         editBtn.setOnAction(e    -> showEditGradesDialog());
         subjectBtn.setOnAction(e -> showSubjectManagerDialog());
         deleteBtn.setOnAction(e  -> deleteSelectedStudent());
+        termBtn.setOnAction(e    -> snapshotTerm(termBtn));
+        whatIfBtn.setOnAction(e  -> toggleWhatIf());
+        historyBtn.setOnAction(e -> showHistoryDialog(historyBtn));
+        regradeBtn.setOnAction(e -> showRegradeDialog());
         exportBtn.setOnAction(e  -> exportToCsv());
-
-        toolbar.getChildren().addAll(addBtn, editBtn, subjectBtn, deleteBtn,
-                new Separator(Orientation.VERTICAL), exportBtn);
+        xlsxBtn.setOnAction(e    -> exportToXlsx(xlsxBtn));
+        gmcBtn.setOnAction(e     -> exportToColumnar(gmcBtn));
+        reportBtn.setOnAction(e  -> exportReports(reportBtn));
+
+        MenuItem dbSaveItem = new MenuItem("DBに保存…");
+        MenuItem dbOpenItem = new MenuItem("DBを開く…");
+        MenuButton dbBtn = new MenuButton("🗄 DB", null, dbSaveItem, dbOpenItem);
+        dbBtn.setStyle("-fx-background-color: #2c3e50; -fx-text-fill: white; -fx-mark-color: white; " +
+                       "-fx-font-weight: bold; -fx-background-radius: 5; -fx-cursor: hand; -fx-padding: 1 4;");
+        dbSaveItem.setOnAction(e -> saveToDatabase(dbBtn));
+        dbOpenItem.setOnAction(e -> openDatabase());
+
+        classBtn = new MenuButton("🏫 クラス");
+        classBtn.setStyle("-fx-background-color: #1abc9c; -fx-text-fill: white; -fx-mark-color: white; " +
+                          "-fx-font-weight: bold; -fx-background-radius: 5; -fx-cursor: hand; -fx-padding: 1 4;");
+        classBtn.setOnShowing(e -> rebuildClassMenu());
+
+        toolbar.getChildren().addAll(addBtn, editBtn, subjectBtn, deleteBtn, termBtn, whatIfBtn, historyBtn, regradeBtn,
+                new Separator(Orientation.VERTICAL), exportBtn, xlsxBtn, gmcBtn, reportBtn,
+                new Separator(Orientation.VERTICAL), dbBtn, classBtn);
 
         tableView = buildTable();
         box.getChildren().addAll(toolbar, tableView);
@@ -125,11 +301,11 @@ public class MainApp extends Application {
         tv.setColumnResizePolicy(TableView.UNCONSTRAINED_RESIZE_POLICY);
 
         TableColumn<Student, String> idCol = new TableColumn<>("学籍番号");
-        idCol.setCellValueFactory(new PropertyValueFactory<>("studentId"));
+        idCol.setCellValueFactory(data -> new ReadOnlyStringWrapper(data.getValue().getStudentId()));
         idCol.setPrefWidth(90); idCol.setMinWidth(80);
 
         TableColumn<Student, String> nameCol = new TableColumn<>("氏名");
-        nameCol.setCellValueFactory(new PropertyValueFactory<>("name"));
+        nameCol.setCellValueFactory(data -> new ReadOnlyStringWrapper(data.getValue().getName()));
         nameCol.setPrefWidth(100); nameCol.setMinWidth(80);
 
         tv.getColumns().addAll(idCol, nameCol);
@@ -161,7 +337,7 @@ public class MainApp extends Application {
         });
 
         tv.getSelectionModel().selectedItemProperty().addListener((obs, o, n) -> updateStats());
-        students.addListener((ListChangeListener<Student>) c -> updateStats());
+        students.addListener((ListChangeListener<Student>) c -> { recomputeWhatIf(); updateStats(); });
         return tv;
     }
 
@@ -250,6 +426,36 @@ public class MainApp extends Application {
         gradeCol.setPrefWidth(65); gradeCol.setMinWidth(55);
 
         group.getColumns().addAll(daysCol, rateCol, testCol, compCol, gradeCol);
+
+        // 必要点表示中: 「可」に必要なテスト点 / 残り欠席可能数
+        if (whatIf != null) {
+            TableColumn<Student, String> needCol = new TableColumn<>("可まで");
+            needCol.setCellValueFactory(data -> new SimpleStringProperty(whatIf == null ? "-" :
+                WhatIfSolver.format(whatIf.minTestScore(data.getValue(), subject, 0))));
+            needCol.setCellFactory(c -> new TableCell<>() {
+                @Override protected void updateItem(String item, boolean empty) {
+                    super.updateItem(item, empty);
+                    setText(empty ? null : item); setAlignment(Pos.CENTER);
+                    setStyle("×".equals(item) ? "-fx-text-fill: #e74c3c; -fx-font-weight: bold;" : "-fx-text-fill: #c0392b;");
+                }
+            });
+            needCol.setPrefWidth(58); needCol.setMinWidth(52);
+
+            TableColumn<Student, String> slackCol = new TableColumn<>("残欠席");
+            slackCol.setCellValueFactory(data -> {
+                Integer a = whatIf == null ? null : whatIf.remainingAbsences(data.getValue(), subject);
+                return new SimpleStringProperty(a == null ? "-" : a < 0 ? "不足" : a + "回");
+            });
+            slackCol.setCellFactory(c -> new TableCell<>() {
+                @Override protected void updateItem(String item, boolean empty) {
+                    super.updateItem(item, empty);
+                    setText(empty ? null : item); setAlignment(Pos.CENTER);
+                    setStyle("不足".equals(item) || "0回".equals(item) ? "-fx-text-fill: #e74c3c; -fx-font-weight: bold;" : "");
+                }
+            });
+            slackCol.setPrefWidth(58); slackCol.setMinWidth(52);
+            group.getColumns().addAll(needCol, slackCol);
+        }
         return group;
     }
 
@@ -257,6 +463,7 @@ public class MainApp extends Application {
 
     private VBox createStatsPanel() {
         VBox box = new VBox(12);
+        statsPanel = box;
         box.setPadding(new Insets(8, 4, 8, 8));
         box.setPrefWidth(270); box.setMinWidth(210);
 
@@ -273,6 +480,13 @@ public class MainApp extends Application {
         statsCard.setStyle("-fx-background-color: white; -fx-border-color: #dce1e7; -fx-border-radius: 8; -fx-background-radius: 8;");
         statsCard.getChildren().add(statsLabel);
 
+        // 評価基準などの参考カードは初回描画の後に reportFirstFrame から組み立てる
+        box.getChildren().addAll(title, statsCard);
+        return box;
+    }
+
+    /** 統計パネルの下に並べる参考カード（評価基準・不可の条件・計算式） */
+    private List<Node> createReferenceCards() {
         // 評価基準
         Text legendTitle = new Text("📋 評価基準");
         legendTitle.setFont(Font.font("System", FontWeight.BOLD, 14));
@@ -320,8 +534,7 @@ public class MainApp extends Application {
         fl.setStyle("-fx-font-size: 11; -fx-text-fill: #1a5276;");
         formulaCard.getChildren().addAll(ft, fl);
 
-        box.getChildren().addAll(title, statsCard, legendTitle, legendCard, ruleCard, formulaCard);
-        return box;
+        return List.of(legendTitle, legendCard, ruleCard, formulaCard);
     }
 
     // ═══════════════════════ Bottom Bar ═══════════════════════
@@ -333,7 +546,24 @@ public class MainApp extends Application {
         bar.setAlignment(Pos.CENTER_LEFT);
         Label hint = new Label("💡 行をダブルクリックで成績編集 ／ 赤字＝出席不足（8割未満）");
         hint.setStyle("-fx-font-size: 12; -fx-text-fill: #7f8c8d;");
-        bar.getChildren().add(hint);
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+        Button diagBtn = createButton("🩺 診断", "#95a5a6");
+        diagBtn.setOnAction(e -> showDiagnosticsDialog());
+
+        // DB表示中のページ送り
+        Button prevBtn = createButton("◀", "#7f8c8d");
+        Button nextBtn = createButton("▶", "#7f8c8d");
+        prevBtn.setOnAction(e -> showPage(pageOffset - PAGE_SIZE));
+        nextBtn.setOnAction(e -> showPage(pageOffset + PAGE_SIZE));
+        pageLabel = new Label();
+        pageLabel.setStyle("-fx-font-size: 12; -fx-text-fill: #2c3e50;");
+        pageBar = new HBox(6, prevBtn, pageLabel, nextBtn);
+        pageBar.setAlignment(Pos.CENTER);
+        pageBar.setPadding(new Insets(0, 12, 0, 0));
+        pageBar.setVisible(false); pageBar.setManaged(false);
+
+        bar.getChildren().addAll(hint, spacer, pageBar, diagBtn);
         return bar;
     }
 
@@ -363,260 +593,272 @@ public class MainApp extends Application {
                 return new Student(idField.getText().trim(), nameField.getText().trim());
             return null;
         });
+        // 学籍番号は名簿・DBの主キーなので、空や重複ではダイアログを閉じない
+        // （DBのページ表示中は他のページとの重複を保存時に検査する）
+        dialog.getDialogPane().lookupButton(okBtn).addEventFilter(ActionEvent.ACTION, e -> {
+            String id = idField.getText().trim();
+            String error = id.isEmpty() ? "学籍番号を入力してください"
+                    : students.stream().anyMatch(st -> st.getStudentId().equals(id)) ? "学籍番号 " + id + " は既に使われています"
+                    : null;
+            if (error != null) {
+                showAlert(error, Alert.AlertType.WARNING);
+                e.consume();
+            }
+        });
 
         dialog.showAndWait().ifPresent(s -> {
             students.add(s);
+            rosterEdited = true;
+            auditLog.studentAdded(s);
+            changeFeed.studentAdded(s);
             tableView.getSelectionModel().select(s);
             showEditGradesDialog();
         });
     }
 
-    /** 成績編集ダイアログ（出席日数 + テスト点） */
+    /** 成績編集ダイアログ（出席日数 + テスト点）。ダイアログは初回に作って使い回す */
     private void showEditGradesDialog() {
         Student sel = tableView.getSelectionModel().getSelectedItem();
         if (sel == null) { showAlert("生徒を選択してください", Alert.AlertType.INFORMATION); return; }
 
-        Dialog<Void> dialog = new Dialog<>();
-        dialog.setTitle("成績編集 — " + sel.getName());
-        dialog.setHeaderText("各科目の出席日数とテスト点を入力してください");
-        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+        if (gradeEditor == null) gradeEditor = new GradeEditorDialog();
+        if (!gradeEditor.showAndWait(sel, subjectTotalDays)) return;
+
+        long t0 = Metrics.start();
+        Map<String, Student.SubjectRecord> before = new HashMap<>();
+        sel.getSubjectMap().forEach((subject, rec) -> before.put(subject, rec.copy()));
+        gradeEditor.applyTo(sel, subjectTotalDays);
+        if (recordsChanged(before, sel.getSubjectMap())) rosterEdited = true;
+        auditLog.recordChanges(sel, before);
+        changeFeed.recordChanges(sel, before);
+        recomputeWhatIf();
+        updateStats();
+        long t1 = Metrics.start();
+        tableView.refresh();
+        // refresh() は再描画の予約だけなので、セルを作り直して配置し終える次のパルスまでを測る
+        stopAfterNextPulse("tableView.refresh", t1);
+        Metrics.stop("dialog.editGrades", t0);
+    }
 
-        VBox container = new VBox(10);
-        container.setPadding(new Insets(16));
+    /** 編集の前後で記録が変わったか */
+    private static boolean recordsChanged(Map<String, Student.SubjectRecord> before, Map<String, Student.SubjectRecord> after) {
+        if (!before.keySet().equals(after.keySet())) return true;
+        for (Map.Entry<String, Student.SubjectRecord> e : after.entrySet()) {
+            Student.SubjectRecord o = before.get(e.getKey()), n = e.getValue();
+            if (o.totalDays != n.totalDays || o.attendedDays != n.attendedDays || !Objects.equals(o.testScore, n.testScore))
+                return true;
+        }
+        return false;
+    }
 
-        // ヘッダー行
-        GridPane grid = new GridPane();
-        grid.setHgap(10); grid.setVgap(9);
-
-        // 列ヘッダー
-        grid.add(boldLabel("科目",      90),  0, 0);
-        grid.add(boldLabel("総授業数",  70),  1, 0);
-        grid.add(boldLabel("出席日数",  70),  2, 0);
-        grid.add(boldLabel("出席率",    60),  3, 0);
-        grid.add(boldLabel("出席点",    60),  4, 0);
-        grid.add(boldLabel("テスト点",  70),  5, 0);
-        grid.add(boldLabel("総合点",    60),  6, 0);
-        grid.add(boldLabel("評価",      55),  7, 0);
-        grid.add(new Separator(), 0, 1, 8, 1);
-
-        // 科目行
-        int[] rowIdx = {2};
-        Map<String, TextField[]> fieldMap = new LinkedHashMap<>();
-
-        for (Map.Entry<String, Integer> entry : subjectTotalDays.entrySet()) {
-            String subject  = entry.getKey();
-            int    total    = entry.getValue();
-            Student.SubjectRecord rec = sel.getOrCreateRecord(subject, total);
-
-            Label subjectLbl = new Label(subject);
-            subjectLbl.setMinWidth(90);
-
-            Label totalLbl = new Label(String.valueOf(total) + "回");
-            totalLbl.setMinWidth(60); totalLbl.setAlignment(Pos.CENTER);
-
-            // 出席日数入力
-            TextField attendedField = new TextField(String.valueOf(rec.attendedDays));
-            attendedField.setPrefWidth(65);
-            attendedField.setPromptText("0〜" + total);
-
-            // テスト点入力
-            TextField testField = new TextField(rec.testScore != null ? String.format("%.0f", rec.testScore) : "");
-            testField.setPrefWidth(65);
-            testField.setPromptText("0〜100");
-
-            // リアルタイム計算ラベル
-            Label rateLabel  = new Label("--");  rateLabel.setMinWidth(55);  rateLabel.setAlignment(Pos.CENTER);
-            Label attPtLabel = new Label("--");  attPtLabel.setMinWidth(55); attPtLabel.setAlignment(Pos.CENTER);
-            Label compLabel  = new Label("--");  compLabel.setMinWidth(55);  compLabel.setAlignment(Pos.CENTER);
-            Label gradeLabel = new Label("--");  gradeLabel.setMinWidth(50); gradeLabel.setAlignment(Pos.CENTER);
-
-            Runnable updatePreview = () -> {
-                try {
-                    int    att  = Integer.parseInt(attendedField.getText().trim());
-                    double rate = (double) att / total;
-                    double attPt = rate * 100.0;
-                    rateLabel.setText(String.format("%.0f%%", rate * 100));
-                    attPtLabel.setText(String.format("%.1f", attPt));
-
-                    boolean sufficient = rate >= 0.8;
-                    String rateColor = sufficient ? "#27ae60" : "#e74c3c";
-                    rateLabel.setStyle("-fx-text-fill: " + rateColor + "; -fx-font-weight: bold;");
-                    attPtLabel.setStyle("-fx-text-fill: " + rateColor + ";");
-
-                    String testStr = testField.getText().trim();
-                    if (!testStr.isEmpty()) {
-                        double test = Double.parseDouble(testStr);
-                        double comp = attPt * 0.5 + test * 0.5;
-                        compLabel.setText(String.format("%.1f", comp));
-                        String g = sufficient ? Student.scoreToGrade(comp) : "不可(出席)";
-                        gradeLabel.setText(g);
-                        gradeLabel.setStyle(gradeStyle(g) + " -fx-font-weight: bold;");
-                        compLabel.setStyle("-fx-font-weight: bold;");
-                    } else {
-                        compLabel.setText("--"); gradeLabel.setText("--");
-                        compLabel.setStyle(""); gradeLabel.setStyle("");
-                    }
-                } catch (NumberFormatException ex) {
-                    rateLabel.setText("--"); attPtLabel.setText("--");
-                    compLabel.setText("--"); gradeLabel.setText("--");
-                    rateLabel.setStyle(""); attPtLabel.setStyle("");
-                }
-            };
-            attendedField.textProperty().addListener((o, ov, nv) -> updatePreview.run());
-            testField.textProperty().addListener((o, ov, nv) -> updatePreview.run());
-            updatePreview.run();
-
-            grid.add(subjectLbl,    0, rowIdx[0]);
-            grid.add(totalLbl,      1, rowIdx[0]);
-            grid.add(attendedField, 2, rowIdx[0]);
-            grid.add(rateLabel,     3, rowIdx[0]);
-            grid.add(attPtLabel,    4, rowIdx[0]);
-            grid.add(testField,     5, rowIdx[0]);
-            grid.add(compLabel,     6, rowIdx[0]);
-            grid.add(gradeLabel,    7, rowIdx[0]);
-
-            fieldMap.put(subject, new TextField[]{attendedField, testField});
-            rowIdx[0]++;
+    /** 科目管理ダイアログ（科目の追加・削除・授業日数変更）。ダイアログは初回に作って使い回す */
+    private void showSubjectManagerDialog() {
+        if (subjectManager == null) subjectManager = new SubjectManagerDialog();
+        // 科目の追加・削除はダイアログ内で即時に反映されるため、キャンセル時も差分を記録・保存する
+        Map<String, Integer> before = new LinkedHashMap<>(subjectTotalDays);
+        // 科目の変更で生徒の記録が変わった分も、生徒ごとのイベントとして配る
+        Map<Student, Map<String, Student.SubjectRecord>> recordsBefore = changeFeed.captureRecords(students);
+        boolean confirmed = subjectManager.showAndWait(subjectTotalDays);
+        // キャンセルでも、ダイアログ内で追加・削除した科目は表・必要点・DBに反映する
+        if (!confirmed && before.equals(subjectTotalDays)) return;
+
+        long t0 = Metrics.start();
+        if (confirmed) subjectManager.applyTo(subjectTotalDays);
+        if (!before.equals(subjectTotalDays)) rosterEdited = true;
+        auditLog.subjectChanges(before, subjectTotalDays);
+        changeFeed.subjectChanges(before, subjectTotalDays);
+        changeFeed.recordChanges(students, recordsBefore);
+        recomputeWhatIf();
+        rebuildTable();
+        if (repository != null) {
+            try {
+                repository.saveSubjects(subjectTotalDays);
+            } catch (SQLException ex) {
+                showAlert("DBへの科目保存に失敗しました: " + ex.getMessage(), Alert.AlertType.ERROR);
+            }
         }
+        Metrics.stop("dialog.subjects", t0);
+    }
 
-        ScrollPane scroll = new ScrollPane(grid);
-        scroll.setFitToWidth(true); scroll.setPrefHeight(340);
-        scroll.setStyle("-fx-background-color: transparent;");
+    /** 計測結果（タイマー・カウンター・ヒープ）の表示 */
+    private void showDiagnosticsDialog() {
+        Dialog<Void> dialog = new Dialog<>();
+        dialog.setTitle("診断");
+        dialog.setHeaderText("処理時間・エクスポート量・メモリ使用量");
+        dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+
+        TextArea area = new TextArea(Metrics.report());
+        area.setEditable(false);
+        area.setStyle("-fx-font-family: monospace; -fx-font-size: 12;");
+        area.setPrefSize(560, 320);
 
-        container.getChildren().add(scroll);
+        Button refreshBtn = createButton("更新", "#2980b9");
+        refreshBtn.setOnAction(e -> area.setText(Metrics.report()));
+
+        VBox container = new VBox(8, area, refreshBtn);
+        container.setPadding(new Insets(12));
         dialog.getDialogPane().setContent(container);
-        dialog.getDialogPane().setPrefWidth(680);
+        dialog.showAndWait();
+    }
 
-        dialog.setResultConverter(btn -> {
-            if (btn == ButtonType.OK) {
-                for (Map.Entry<String, TextField[]> e : fieldMap.entrySet()) {
-                    String subject = e.getKey();
-                    int total = subjectTotalDays.getOrDefault(subject, 0);
-                    Student.SubjectRecord rec = sel.getOrCreateRecord(subject, total);
-                    try {
-                        int att = Integer.parseInt(e.getValue()[0].getText().trim());
-                        rec.attendedDays = Math.max(0, Math.min(total, att));
-                    } catch (NumberFormatException ignored) {}
-                    String testStr = e.getValue()[1].getText().trim();
-                    if (!testStr.isEmpty()) {
-                        try {
-                            rec.testScore = Math.max(0, Math.min(100, Double.parseDouble(testStr)));
-                        } catch (NumberFormatException ignored) {}
-                    } else {
-                        rec.testScore = null;
-                    }
+    private void deleteSelectedStudent() {
+        Student sel = tableView.getSelectionModel().getSelectedItem();
+        if (sel == null) { showAlert("生徒を選択してください", Alert.AlertType.INFORMATION); return; }
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION,
+            sel.getName() + " を削除しますか？", ButtonType.YES, ButtonType.NO);
+        confirm.setTitle("削除確認");
+        confirm.showAndWait().filter(b -> b == ButtonType.YES).ifPresent(b -> {
+            // ページに追加しただけの生徒はまだDBにない（同じ学籍番号の別の生徒を消さない）
+            if (repository != null && pageIds.contains(sel.getStudentId())) {
+                try {
+                    repository.deleteStudent(sel.getStudentId());
+                } catch (SQLException ex) {
+                    showAlert("DBからの削除に失敗しました: " + ex.getMessage(), Alert.AlertType.ERROR);
+                    return;
                 }
-                tableView.refresh();
-                updateStats();
             }
-            return null;
+            students.remove(sel);
+            rosterEdited = true;
+            auditLog.studentDeleted(sel);
+            changeFeed.studentRemoved(sel);
         });
+    }
 
-        dialog.showAndWait();
+    /** 選択中の生徒の変更履歴（監査ログの索引から該当行だけを読む） */
+    private void showHistoryDialog(Button trigger) {
+        Student sel = tableView.getSelectionModel().getSelectedItem();
+        if (sel == null) { showAlert("生徒を選択してください", Alert.AlertType.INFORMATION); return; }
+        String id = sel.getStudentId();
+        AuditLog log = auditLog;
+        runInBackground("履歴の読み込み", trigger, () -> {
+            long t0 = Metrics.start();
+            List<AuditLog.Entry> entries = log.historyOf(id);
+            List<AuditLog.Entry> subjectEntries = log.historyOf(AuditLog.ALL_STUDENTS);
+            Metrics.stop("audit.history", t0);
+            List<AuditLog.Entry> all = new ArrayList<>(entries);
+            all.addAll(subjectEntries);
+            all.sort(Comparator.comparing(AuditLog.Entry::time));
+            return all;
+        }, entries -> {
+            StringBuilder sb = new StringBuilder();
+            DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss");
+            for (AuditLog.Entry e : entries) {
+                sb.append(String.format("%s  %-8s %-15s %-6s %-12s %s → %s%n",
+                        fmt.format(e.time()), e.user(), e.action(),
+                        e.subject().isEmpty() ? "-" : e.subject(), e.field(),
+                        e.oldValue().isEmpty() ? "(なし)" : e.oldValue(),
+                        e.newValue().isEmpty() ? "(なし)" : e.newValue()));
+            }
+            if (entries.isEmpty()) sb.append("記録はありません");
+
+            Dialog<Void> dialog = new Dialog<>();
+            dialog.setTitle("変更履歴 — " + sel.getName());
+            dialog.setHeaderText(id + " の変更履歴（科目の授業日数変更を含む・" + entries.size() + "件）");
+            dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+            TextArea area = new TextArea(sb.toString());
+            area.setEditable(false);
+            area.setStyle("-fx-font-family: monospace; -fx-font-size: 12;");
+            area.setPrefSize(720, 360);
+            dialog.getDialogPane().setContent(area);
+            dialog.showAndWait();
+        });
     }
 
-    /** 科目管理ダイアログ（科目の追加・削除・授業日数変更） */
-    private void showSubjectManagerDialog() {
+    /** 判定基準（出席率の下限・合格点）を変えた場合に評価が変わる記録の一覧 */
+    private void showRegradeDialog() {
+        if (blockedWhilePaged("再判定")) return;
         Dialog<Void> dialog = new Dialog<>();
-        dialog.setTitle("科目管理");
-        dialog.setHeaderText("科目の追加・削除・総授業日数の変更");
-        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
-
-        VBox container = new VBox(10);
-        container.setPadding(new Insets(16));
-
-        // 既存科目リスト
-        Label existingTitle = new Label("登録済み科目");
-        existingTitle.setStyle("-fx-font-weight: bold;");
-
-        GridPane existingGrid = new GridPane();
-        existingGrid.setHgap(10); existingGrid.setVgap(6);
-        existingGrid.add(boldLabel("科目名", 100), 0, 0);
-        existingGrid.add(boldLabel("総授業日数", 90), 1, 0);
-        existingGrid.add(new Separator(), 0, 1, 3, 1);
-
-        Map<String, TextField> dayFields = new LinkedHashMap<>();
-        int[] r = {2};
-        for (Map.Entry<String, Integer> e : subjectTotalDays.entrySet()) {
-            Label lbl = new Label(e.getKey()); lbl.setMinWidth(100);
-            TextField tf = new TextField(String.valueOf(e.getValue())); tf.setPrefWidth(80);
-            Button delBtn = createButton("削除", "#e74c3c");
-            String subName = e.getKey();
-            delBtn.setOnAction(ev -> {
-                subjectTotalDays.remove(subName);
-                existingGrid.getChildren().removeIf(n -> {
-                    Integer ri = GridPane.getRowIndex(n);
-                    return ri != null && ri == GridPane.getRowIndex(lbl);
-                });
-            });
-            existingGrid.add(lbl,   0, r[0]);
-            existingGrid.add(tf,    1, r[0]);
-            existingGrid.add(delBtn,2, r[0]);
-            dayFields.put(e.getKey(), tf);
-            r[0]++;
-        }
-
-        // 新規追加
-        Separator sep = new Separator();
-        Label addTitle = new Label("新規科目を追加");
-        addTitle.setStyle("-fx-font-weight: bold;");
-        HBox addRow = new HBox(8); addRow.setAlignment(Pos.CENTER_LEFT);
-        TextField newNameField = new TextField(); newNameField.setPromptText("科目名"); newNameField.setPrefWidth(120);
-        TextField newDaysField = new TextField(); newDaysField.setPromptText("総授業日数"); newDaysField.setPrefWidth(90);
-        Button addBtn = createButton("追加", "#27ae60");
-        addRow.getChildren().addAll(newNameField, new Label("全"), newDaysField, new Label("回"), addBtn);
-
-        addBtn.setOnAction(ev -> {
-            String nm = newNameField.getText().trim();
-            String ds = newDaysField.getText().trim();
-            if (!nm.isEmpty() && !ds.isEmpty() && !subjectTotalDays.containsKey(nm)) {
-                try {
-                    int days = Integer.parseInt(ds);
-                    if (days > 0) {
-                        subjectTotalDays.put(nm, days);
-                        newNameField.clear(); newDaysField.clear();
-                        showAlert("「" + nm + "」を追加しました。科目一覧はOK後に反映されます。", Alert.AlertType.INFORMATION);
-                    }
-                } catch (NumberFormatException ignored) {}
+        dialog.setTitle("再判定");
+        dialog.setHeaderText("判定基準を変えた場合に評価が変わる記録を、全生徒・全科目について比較します");
+        dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+
+        TextField cutField  = new TextField(String.format("%.0f", GradingRule.CURRENT.attendanceCut() * 100));
+        TextField passField = new TextField(String.format("%.0f", GradingRule.CURRENT.passScore()));
+        cutField.setPrefWidth(60); passField.setPrefWidth(60);
+        Button runBtn = createButton("比較", "#d35400");
+
+        HBox form = new HBox(8, new Label("出席率の下限:"), cutField, new Label("%"),
+                new Label("  合格点:"), passField, new Label("点以上"), runBtn);
+        form.setAlignment(Pos.CENTER_LEFT);
+
+        TextArea area = new TextArea("現行: " + GradingRule.CURRENT);
+        area.setEditable(false);
+        area.setStyle("-fx-font-family: monospace; -fx-font-size: 12;");
+        area.setPrefSize(760, 400);
+
+        runBtn.setOnAction(e -> {
+            GradingRule proposed;
+            try {
+                proposed = new GradingRule(Double.parseDouble(cutField.getText().trim()) / 100.0,
+                                           Double.parseDouble(passField.getText().trim()));
+            } catch (IllegalArgumentException ex) {   // NumberFormatException を含む
+                showAlert("判定基準が正しくありません: " + ex.getMessage(), Alert.AlertType.WARNING);
+                return;
             }
+            List<Student> roster = new ArrayList<>(students);
+            List<String> subjects = new ArrayList<>(subjectTotalDays.keySet());
+            runInBackground("再判定", runBtn, () -> {
+                long t0 = Metrics.start();
+                RegradeDiff.Report report = RegradeDiff.run(roster, subjects, GradingRule.CURRENT, proposed);
+                Metrics.stop("regrade.diff", t0);
+                return report.format(500);
+            }, area::setText);
         });
 
-        container.getChildren().addAll(existingTitle, existingGrid, sep, addTitle, addRow);
-        ScrollPane scroll = new ScrollPane(container);
-        scroll.setFitToWidth(true); scroll.setPrefHeight(360);
-        dialog.getDialogPane().setContent(scroll);
-        dialog.getDialogPane().setPrefWidth(420);
+        VBox container = new VBox(8, form, area);
+        container.setPadding(new Insets(12));
+        dialog.getDialogPane().setContent(container);
+        dialog.showAndWait();
+    }
 
-        dialog.setResultConverter(btn -> {
-            if (btn == ButtonType.OK) {
-                // 日数の変更を反映
-                for (Map.Entry<String, TextField> e : dayFields.entrySet()) {
-                    if (subjectTotalDays.containsKey(e.getKey())) {
-                        try {
-                            int d = Integer.parseInt(e.getValue().getText().trim());
-                            if (d > 0) subjectTotalDays.put(e.getKey(), d);
-                        } catch (NumberFormatException ignored) {}
-                    }
-                }
-                rebuildTable();
+    /** 現在の成績を学期スナップショットとして保存 */
+    private void snapshotTerm(Button trigger) {
+        if (blockedWhilePaged("学期保存")) return;
+        TextInputDialog dialog = new TextInputDialog((termHistory.getTerms().size() + 1) + "学期");
+        dialog.setTitle("学期保存");
+        dialog.setHeaderText("現在の成績を学期として保存します");
+        dialog.setContentText("学期名:");
+        dialog.showAndWait().map(String::trim).filter(n -> !n.isEmpty()).ifPresent(name -> {
+            if (termHistory.getTerms().stream().anyMatch(t -> t.name().equals(name))) {
+                showAlert("「" + name + "」は既に保存されています", Alert.AlertType.INFORMATION);
+                return;
             }
-            return null;
+            // 凍結はFXスレッドで、ファイルへの追記はバックグラウンドで（Term は不変）
+            TermHistory history = termHistory;
+            TermHistory.Term term = history.snapshot(name, students, subjectTotalDays);
+            updateStats();
+            runInBackground("term-save", trigger, () -> {
+                try {
+                    history.save(term);
+                } catch (IOException ex) {
+                    throw new IOException("学期「" + name + "」をファイルに保存できませんでした（この実行中は表示されます）: " + ex.getMessage(), ex);
+                }
+                return term;
+            }, t -> {});
         });
-        dialog.showAndWait();
     }
 
-    private void deleteSelectedStudent() {
-        Student sel = tableView.getSelectionModel().getSelectedItem();
-        if (sel == null) { showAlert("生徒を選択してください", Alert.AlertType.INFORMATION); return; }
-        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION,
-            sel.getName() + " を削除しますか？", ButtonType.YES, ButtonType.NO);
-        confirm.setTitle("削除確認");
-        confirm.showAndWait().filter(b -> b == ButtonType.YES).ifPresent(b -> students.remove(sel));
+    // ═══════════════════════ What-if ═══════════════════════
+
+    /** 必要点（各評価に必要なテスト点・残り欠席可能数）の表示を切り替え */
+    private void toggleWhatIf() {
+        whatIf = whatIf == null ? WhatIfSolver.solve(students, subjectTotalDays) : null;
+        rebuildTable();
+        updateStats();
+    }
+
+    /** 表示中なら全生徒・全科目を再計算 */
+    private void recomputeWhatIf() {
+        if (whatIf == null) return;
+        long t0 = Metrics.start();
+        whatIf = WhatIfSolver.solve(students, subjectTotalDays);
+        Metrics.stop("whatIf.solve", t0);
     }
 
     // ═══════════════════════ CSV Export ═══════════════════════
 
     private void exportToCsv() {
+        if (blockedWhilePaged("CSVエクスポート")) return;
         if (students.isEmpty()) { showAlert("データがありません", Alert.AlertType.INFORMATION); return; }
 
         FileChooser fc = new FileChooser();
@@ -626,6 +868,7 @@ public class MainApp extends Application {
         File file = fc.showSaveDialog(tableView.getScene().getWindow());
 
         if (file == null) return;
+        long t0 = Metrics.start();
         try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"))) {
             pw.print('\uFEFF'); // BOM for Excel
 
@@ -640,6 +883,10 @@ public class MainApp extends Application {
                 hdr.append(",").append(s).append("_テスト点");
                 hdr.append(",").append(s).append("_総合点");
                 hdr.append(",").append(s).append("_評価");
+                if (whatIf != null) {
+                    for (String band : WhatIfSolver.BANDS) hdr.append(",").append(s).append("_").append(band).append("必要点");
+                    hdr.append(",").append(s).append("_残欠席可能数");
+                }
             }
             hdr.append(",総合平均,全体評価");
             pw.println(hdr);
@@ -662,72 +909,585 @@ public class MainApp extends Application {
                         row.append(",").append(comp != null ? String.format("%.1f", comp) : "");
                         row.append(",").append(rec.gradeLabel());
                     }
+                    if (whatIf != null) {
+                        for (int b = 0; b < WhatIfSolver.BANDS.length; b++)
+                            row.append(",").append(WhatIfSolver.format(whatIf.minTestScore(st, subject, b)));
+                        Integer a = whatIf.remainingAbsences(st, subject);
+                        row.append(",").append(a != null ? a.toString() : "-");
+                    }
                 }
                 row.append(",").append(String.format("%.1f", st.getOverallAverage()));
                 row.append(",").append(st.getOverallGradeLabel());
                 pw.println(row);
             }
+            pw.flush();
+            Metrics.stop("export.csv", t0);
+            Metrics.count("export.csv.bytes", file.length());
             showAlert("CSVエクスポート完了！\n保存先: " + file.getAbsolutePath(), Alert.AlertType.INFORMATION);
         } catch (Exception ex) {
             showAlert("エクスポートに失敗しました: " + ex.getMessage(), Alert.AlertType.ERROR);
         }
     }
 
-    // ═══════════════════════ Stats Update ═══════════════════════
+    // ═══════════════════════ XLSX Export ═══════════════════════
 
-    private void updateStats() {
-        if (students.isEmpty()) { statsLabel.setText("生徒が登録されていません"); return; }
+    /** Excel形式（色分け・科目見出し付き）でバックグラウンド書き出し */
+    private void exportToXlsx(Button trigger) {
+        if (blockedWhilePaged("Excelエクスポート")) return;
+        if (students.isEmpty()) { showAlert("データがありません", Alert.AlertType.INFORMATION); return; }
+
+        FileChooser fc = new FileChooser();
+        fc.setTitle("Excelファイルを保存");
+        fc.setInitialFileName("grades_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".xlsx");
+        fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("Excel Files", "*.xlsx"));
+        File file = fc.showSaveDialog(tableView.getScene().getWindow());
+        if (file == null) return;
+
+        // FXスレッドで生徒と記録を複製してから書き出す（書き出し中の編集は反映しない）
+        XlsxExporter exporter = new XlsxExporter(students, subjectTotalDays);
+        runInBackground("xlsx-export", trigger, () -> timedExport("export.xlsx", file, exporter::export), rows ->
+            showAlert("Excelエクスポート完了！（" + rows + "名）\n保存先: " + file.getAbsolutePath(), Alert.AlertType.INFORMATION));
+    }
+
+    // ═══════════════════════ Columnar Export ═══════════════════════
+
+    /** 集計用の列指向形式（.gmc、1科目1行の縦持ち）で書き出し */
+    private void exportToColumnar(Button trigger) {
+        if (blockedWhilePaged("集計用エクスポート")) return;
+        if (students.isEmpty()) { showAlert("データがありません", Alert.AlertType.INFORMATION); return; }
+
+        FileChooser fc = new FileChooser();
+        fc.setTitle("集計用ファイルを保存");
+        fc.setInitialFileName("grades_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".gmc");
+        fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("Grade Columnar Files", "*.gmc"));
+        File file = fc.showSaveDialog(tableView.getScene().getWindow());
+        if (file == null) return;
+
+        // FXスレッドで生徒と記録を複製してから書き出す（書き出し中の編集は反映しない）
+        ColumnarExporter exporter = new ColumnarExporter(students, subjectTotalDays);
+        runInBackground("columnar-export", trigger, () -> timedExport("export.gmc", file, exporter::export), rows ->
+            showAlert("集計用エクスポート完了！（" + rows + "行）\n保存先: " + file.getAbsolutePath(), Alert.AlertType.INFORMATION));
+    }
+
+    // ═══════════════════════ Report Export ═══════════════════════
+
+    /** 生徒ごとの成績表（HTML）を作り、zip にまとめて書き出し */
+    private void exportReports(Button trigger) {
+        if (blockedWhilePaged("成績表の作成")) return;
+        if (students.isEmpty()) { showAlert("データがありません", Alert.AlertType.INFORMATION); return; }
+
+        TextInputDialog dialog = new TextInputDialog((activeClass != null ? activeClass + " " : "") + "成績表");
+        dialog.setTitle("成績表の作成");
+        dialog.setHeaderText("各生徒の成績表の見出しを入力してください");
+        dialog.setContentText("見出し:");
+        Optional<String> title = dialog.showAndWait().map(String::trim).filter(t -> !t.isEmpty());
+        if (title.isEmpty()) return;
+
+        FileChooser fc = new FileChooser();
+        fc.setTitle("成績表を保存");
+        fc.setInitialFileName("reports_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".zip");
+        fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("ZIP Files", "*.zip"));
+        File file = fc.showSaveDialog(tableView.getScene().getWindow());
+        if (file == null) return;
+
+        // FXスレッドで生徒と記録を複製してから書き出す（作成中の編集は反映しない）
+        ReportGenerator generator = new ReportGenerator(students, subjectTotalDays, title.get());
+        runInBackground("report-export", trigger, () -> timedExport("export.reports", file, generator::export), count ->
+            showAlert("成績表の作成完了！（" + count + "名）\n保存先: " + file.getAbsolutePath(), Alert.AlertType.INFORMATION));
+    }
+
+    /** エクスポートの所要時間と書き出しバイト数を記録 */
+    private long timedExport(String metric, File file, FileExport export) throws IOException {
+        long t0 = Metrics.start();
+        long rows = export.write(file);
+        Metrics.stop(metric, t0);
+        Metrics.count(metric + ".bytes", file.length());
+        return rows;
+    }
+
+    @FunctionalInterface
+    private interface FileExport { long write(File file) throws IOException; }
+
+    // ═══════════════════════ Database ═══════════════════════
+
+    /** DBをページ表示中なら、名簿全体が対象の機能は使えない旨を伝えて true を返す */
+    private boolean blockedWhilePaged(String feature) {
+        if (repository == null) return false;
+        showAlert("DBをページ表示中は" + feature + "を使えません。\n" +
+                  "表示中のページ（最大" + PAGE_SIZE + "名）だけが対象になり、DB全体の結果にならないためです。",
+                  Alert.AlertType.INFORMATION);
+        return true;
+    }
+
+    /** 現在の成績をDBファイルへ書き出す（バックグラウンド） */
+    private void saveToDatabase(MenuButton trigger) {
+        FileChooser fc = new FileChooser();
+        fc.setTitle("DBファイルを保存");
+        fc.setInitialFileName("grades.mv.db");
+        fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("H2 Database", "*.mv.db"));
+        File file = fc.showSaveDialog(tableView.getScene().getWindow());
+        if (file == null) return;
+
+        // 書き込み中も編集できるよう、FXスレッドで生徒と記録を複製して渡す
+        List<Student> snapshot = students.stream().map(Student::copy).toList();
+        Map<String, Integer> subjects = new LinkedHashMap<>(subjectTotalDays);
+        trigger.setDisable(true);
+        runInBackground("db-save", null, () -> {
+            try (GradeRepository repo = new GradeRepository(file)) {
+                repo.saveSubjects(subjects);
+                repo.saveStudents(snapshot);
+                return repo.countStudents();
+            } finally {
+                Platform.runLater(() -> trigger.setDisable(false));
+            }
+        }, count -> showAlert("DB保存完了！（" + count + "名）\n保存先: " + file.getAbsolutePath(), Alert.AlertType.INFORMATION));
+    }
+
+    // ═══════════════════════ Class Workspace ═══════════════════════
+
+    /** ワークスペースを開く（初回のみ）。開けなければ null */
+    private ClassWorkspace workspace() {
+        if (workspace == null) {
+            try {
+                workspace = new ClassWorkspace(ClassWorkspace.defaultDir(), ClassWorkspace.defaultMaxResident());
+            } catch (IOException | RuntimeException ex) {
+                showAlert("クラス一覧を読み込めませんでした: " + ex.getMessage(), Alert.AlertType.ERROR);
+            }
+        }
+        return workspace;
+    }
+
+    /** クラスメニューを開くたびに、クラス一覧（● はメモリ上）と操作を並べ直す */
+    private void rebuildClassMenu() {
+        ClassWorkspace ws = workspace();
+        classBtn.getItems().clear();
+        if (ws == null) return;
+        ToggleGroup group = new ToggleGroup();
+        for (String name : ws.classNames()) {
+            RadioMenuItem item = new RadioMenuItem((ws.isResident(name) ? "● " : "○ ") + name);
+            item.setToggleGroup(group);
+            item.setSelected(name.equals(activeClass));
+            item.setOnAction(e -> switchClass(name));
+            classBtn.getItems().add(item);
+        }
+        if (!classBtn.getItems().isEmpty()) classBtn.getItems().add(new SeparatorMenuItem());
+
+        MenuItem newItem  = new MenuItem("新しいクラス…");
+        MenuItem saveItem = new MenuItem("現在の名簿をクラスとして保存…");
+        MenuItem sumItem  = new MenuItem("全クラス集計…");
+        newItem.setOnAction(e -> createClass(false));
+        saveItem.setOnAction(e -> createClass(true));
+        sumItem.setOnAction(e -> showClassSummaryDialog());
+        saveItem.setDisable(activeClass != null || repository != null);
+        classBtn.getItems().addAll(newItem, saveItem, sumItem);
+    }
+
+    /** 表示中の名簿をワークスペースに戻す（クラス表示中で、編集があったときのみ） */
+    private void syncActiveClass() {
+        if (workspace == null || activeClass == null || !rosterEdited) return;
+        try {
+            workspace.update(activeClass, students, subjectTotalDays);
+            rosterEdited = false;
+        } catch (IOException ex) {
+            showAlert("クラス集計の保存に失敗しました: " + ex.getMessage(), Alert.AlertType.ERROR);
+        }
+    }
+
+    /** 新しいクラスを作って表示する（withRoster なら現在の名簿をそのまま、でなければ空の名簿で） */
+    private void createClass(boolean withRoster) {
+        ClassWorkspace ws = workspace();
+        if (ws == null) return;
+        TextInputDialog dialog = new TextInputDialog((ws.classNames().size() + 1) + "組");
+        dialog.setTitle("クラス作成");
+        dialog.setHeaderText(withRoster ? "現在の名簿を新しいクラスとして保存します" : "空のクラスを作成します（科目は現在の設定を引き継ぎます）");
+        dialog.setContentText("クラス名:");
+        dialog.showAndWait().map(String::trim).filter(n -> !n.isEmpty()).ifPresent(name -> {
+            if (ws.contains(name)) {
+                showAlert("「" + name + "」は既にあります", Alert.AlertType.INFORMATION);
+                return;
+            }
+            closeDatabase(() -> {
+                syncActiveClass();
+                // 書き込み中に画面の編集が混ざらないよう、記録まで複製して渡す
+                List<Student> roster = withRoster ? students.stream().map(Student::copy).toList() : List.of();
+                Map<String, Integer> subjects = new LinkedHashMap<>(subjectTotalDays);
+                runDatabaseJob("class-create", () ->
+                    new WithTerms<>(ws.create(name, roster, subjects), readTermHistory(ws.dataDir(name))),
+                    this::showClass);
+            });
+        });
+    }
+
+    /** 別のクラスに切り替える（必要ならファイルから読み込み、古いクラスを書き戻す） */
+    private void switchClass(String name) {
+        if (name.equals(activeClass)) return;
+        if (activeClass == null && repository == null && !students.isEmpty()) {
+            Alert confirm = new Alert(Alert.AlertType.CONFIRMATION,
+                "現在の名簿はクラスとして保存されていません。破棄して切り替えますか？", ButtonType.YES, ButtonType.NO);
+            confirm.setTitle("クラス切り替え");
+            if (confirm.showAndWait().filter(b -> b == ButtonType.YES).isEmpty()) return;
+        }
+        closeDatabase(() -> {
+            syncActiveClass();
+            ClassWorkspace ws = workspace;
+            // 読み込みと手放すクラスの書き戻しが終わるまで、表示中の名簿を編集させない
+            runDatabaseJob("class-open", () -> new WithTerms<>(ws.open(name), readTermHistory(ws.dataDir(name))),
+                this::showClass);
+        });
+    }
+
+    private void showClass(WithTerms<ClassWorkspace.Gradebook> loaded) {
+        ClassWorkspace.Gradebook gb = loaded.value();
+        activeClass = gb.getName();
+        rosterEdited = false;
+        useRosterScope(workspace.dataDir(activeClass), loaded.terms());
+        classBtn.setText("🏫 " + activeClass);
+        subjectTotalDays.clear();
+        subjectTotalDays.putAll(gb.getSubjectTotalDays());
+        rebuildTable();
+        students.setAll(gb.getStudents());
+        changeFeed.rosterLoaded("クラス " + activeClass, students.size());
+        updateStats();
+    }
+
+    /** 全クラスの集計（各クラスの要約から計算し、名簿は読み込まない） */
+    private void showClassSummaryDialog() {
+        ClassWorkspace ws = workspace();
+        if (ws == null) return;
+        syncActiveClass();
 
-        Student sel = tableView.getSelectionModel().getSelectedItem();
         StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-10s %6s %8s %8s %8s  %s%n", "クラス", "人数", "記録数", "平均点", "不可率", "評価分布"));
+        List<ClassWorkspace.ClassSummary> rows = new ArrayList<>(ws.summaries());
+        if (rows.isEmpty()) sb.append("クラスがありません（「🏫 クラス」→「新しいクラス…」で作成）\n");
+        else rows.add(ws.total());
+        for (ClassWorkspace.ClassSummary s : rows) {
+            if (s.file().isEmpty()) sb.append("─".repeat(60)).append('\n');
+            String dist = s.gradeCounts().entrySet().stream()
+                    .map(e -> e.getKey() + " " + e.getValue())
+                    .collect(Collectors.joining(", "));
+            sb.append(String.format("%-10s %6d %8d %8.1f %7.1f%%  %s%n",
+                    s.name(), s.students(), s.records(), s.average(), s.failRate() * 100, dist));
+        }
+
+        Dialog<Void> dialog = new Dialog<>();
+        dialog.setTitle("全クラス集計");
+        dialog.setHeaderText("全クラスの人数・平均点・不可率（メモリ上: " +
+                ws.classNames().stream().filter(ws::isResident).count() + " / " + ws.classNames().size() + " クラス）");
+        dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+        TextArea area = new TextArea(sb.toString());
+        area.setEditable(false);
+        area.setStyle("-fx-font-family: monospace; -fx-font-size: 12;");
+        area.setPrefSize(720, 320);
+        dialog.getDialogPane().setContent(area);
+        dialog.showAndWait();
+    }
+
+    /** DBから読み込んだ1ページ分（offset 件目から、全 total 名中） */
+    private record Page(int offset, int total, List<Student> students, Map<String, Map<String, Long>> gradeCounts) {}
+
+    /** バックグラウンドで開いたDBと、その科目設定・1ページ目 */
+    private record OpenedDatabase(GradeRepository repository, Map<String, Integer> subjects, Page firstPage,
+                                  TermHistory terms) {}
+
+    /** DBファイルを開き、1ページ目を表示する（読み込みはバックグラウンド） */
+    private void openDatabase() {
+        FileChooser fc = new FileChooser();
+        fc.setTitle("DBファイルを開く");
+        fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("H2 Database", "*.mv.db"));
+        File file = fc.showOpenDialog(tableView.getScene().getWindow());
+        if (file == null) return;
+
+        closeDatabase(() -> {
+            // クラス表示中なら、その名簿をワークスペースに戻してから DB に切り替える
+            syncActiveClass();
+            runDatabaseJob("db-open", () -> {
+                GradeRepository repo = new GradeRepository(file);
+                try {
+                    return new OpenedDatabase(repo, repo.loadSubjects(), readPage(repo, 0),
+                                              readTermHistory(GradeRepository.dataDir(file)));
+                } catch (SQLException | IOException ex) {
+                    repo.close();
+                    throw ex;
+                }
+            }, db -> {
+                activeClass = null;
+                classBtn.setText("🏫 クラス");
+                useRosterScope(GradeRepository.dataDir(file), db.terms());
+                repository = db.repository();
+                subjectTotalDays.clear();
+                subjectTotalDays.putAll(db.subjects());
+                rebuildTable();
+                pageBar.setVisible(true); pageBar.setManaged(true);
+                showLoadedPage(db.firstPage());
+            });
+        });
+    }
+
+    /** 表示中のページを書き戻してから別ページを表示（範囲外なら書き戻すだけ） */
+    private void showPage(int offset) {
+        if (repository == null) return;
+        GradeRepository repo = repository;
+        List<Student> current = new ArrayList<>(students);
+        Set<String> ids = pageIds;
+        runDatabaseJob("db-page", () -> {
+            repo.savePage(current, ids);
+            return offset < 0 || offset >= Math.max(repo.countStudents(), 1) ? null : readPage(repo, offset);
+        }, page -> { if (page != null) showLoadedPage(page); });
+    }
+
+    /** バックグラウンドで呼ぶ */
+    private static Page readPage(GradeRepository repo, int offset) throws SQLException {
+        int total = repo.countStudents();
+        Map<String, Map<String, Long>> counts = new LinkedHashMap<>();
+        for (String subject : repo.loadSubjects().keySet()) counts.put(subject, repo.countByGrade(subject));
+        return new Page(offset, total, repo.loadPage(offset, PAGE_SIZE), counts);
+    }
+
+    private void showLoadedPage(Page page) {
+        // 統計の見出しに使うので、名簿を差し替える（リスナーが統計を更新する）前に設定する
+        pageOffset = page.offset();
+        pageTotal = page.total();
+        dbGradeCounts = page.gradeCounts();
+        pageIds = new HashSet<>();
+        for (Student st : page.students()) pageIds.add(st.getStudentId());
+        students.setAll(page.students());
+        changeFeed.rosterLoaded(String.format("DB %d件目から（全%d名）", page.offset() + 1, page.total()), students.size());
+        int pages = Math.max(1, (page.total() + PAGE_SIZE - 1) / PAGE_SIZE);
+        pageLabel.setText(String.format("%d / %d ページ（全%d名）", page.offset() / PAGE_SIZE + 1, pages, page.total()));
+    }
+
+    /**
+     * 表示中のページを書き戻してDBを閉じ、成功したら then を実行する（書き戻しはバックグラウンド）。
+     * 保存に失敗したときはDBを開いたままにし、then は実行しない
+     */
+    private void closeDatabase(Runnable then) {
+        if (repository == null) { then.run(); return; }
+        GradeRepository repo = repository;
+        List<Student> current = new ArrayList<>(students);
+        Set<String> ids = pageIds;
+        runDatabaseJob("db-close", () -> {
+            repo.savePage(current, ids);
+            repo.close();
+            return repo;
+        }, closed -> {
+            repository = null;
+            pageBar.setVisible(false); pageBar.setManaged(false);
+            then.run();
+        });
+    }
+
+    /** DB・クラスの読み書きをバックグラウンドで行い、その間は名簿の編集・ページ送り・他の操作を止める */
+    private <T> void runDatabaseJob(String name, Callable<T> job, Consumer<T> onSuccess) {
+        setDatabaseBusy(true);
+        runInBackground(name, null, () -> {
+            try {
+                return job.call();
+            } finally {
+                Platform.runLater(() -> setDatabaseBusy(false));
+            }
+        }, onSuccess);
+    }
 
-        double classAvg = students.stream().mapToDouble(Student::getOverallAverage).average().orElse(0);
-        sb.append("👥 全体統計\n");
-        sb.append(String.format("  生徒数: %d名\n", students.size()));
-        sb.append(String.format("  クラス平均: %.1f点\n\n", classAvg));
+    private void setDatabaseBusy(boolean busy) {
+        toolbar.setDisable(busy);
+        tableView.setDisable(busy);
+        pageBar.setDisable(busy);
+    }
 
-        sb.append("📊 評価分布\n");
-        for (String g : new String[]{"秀","優","良","可","不可"}) {
-            long cnt = students.stream().filter(s -> s.getOverallGradeLabel().equals(g)).count();
-            if (cnt > 0) sb.append(String.format("  %s: %d名\n", g, cnt));
+    /**
+     * 終了前に、表示中のDBのページ・クラスの変更・監査ログを書き出す。
+     * 失敗したときは内容を示して、保存せずに終了するかを選ばせる（false なら終了しない）
+     */
+    private boolean saveBeforeExit() {
+        List<String> errors = new ArrayList<>();
+        if (repository != null) {
+            try {
+                repository.savePage(students, pageIds);
+            } catch (SQLException ex) {
+                errors.add("DB: " + ex.getMessage());
+            }
+        }
+        if (workspace != null) {
+            try {
+                if (activeClass != null && rosterEdited) {
+                    workspace.update(activeClass, students, subjectTotalDays);
+                    rosterEdited = false;
+                }
+                workspace.close();
+            } catch (IOException ex) {
+                errors.add("クラス: " + ex.getMessage());
+            }
+        }
+        for (AuditLog log : auditLogs.values()) {
+            try {
+                log.flush();
+            } catch (IOException ex) {
+                errors.add("監査ログ: " + ex.getMessage());
+            }
         }
+        if (errors.isEmpty()) return true;
 
-        if (sel != null && !sel.getSubjectMap().isEmpty()) {
-            sb.append("\n─────────────────\n");
-            sb.append("👤 ").append(sel.getName()).append("\n");
-            sb.append(String.format("  総合平均: %.1f点\n", sel.getOverallAverage()));
-            sb.append("  評価: ").append(sel.getOverallGradeLabel()).append("\n\n");
-            sb.append("📝 科目別\n");
-            for (Map.Entry<String, Student.SubjectRecord> e : sel.getSubjectMap().entrySet()) {
-                Student.SubjectRecord r = e.getValue();
-                Double comp = r.compositeScore();
-                sb.append(String.format("  %s\n", e.getKey()));
-                sb.append(String.format("    出席: %d/%d回（%.0f%%）\n",
-                        r.attendedDays, r.totalDays, r.attendanceRate() * 100));
-                sb.append(String.format("    出席点: %.1f  テスト: %s\n",
-                        r.attendanceScore(),
-                        r.testScore != null ? String.format("%.0f", r.testScore) : "-"));
-                sb.append(String.format("    総合: %s  評価: %s\n",
-                        comp != null ? String.format("%.1f", comp) : "-",
-                        r.gradeLabel()));
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION,
+            "保存に失敗しました。\n" + String.join("\n", errors) + "\n\n保存せずに終了しますか？", ButtonType.YES, ButtonType.NO);
+        confirm.setTitle("終了確認");
+        confirm.setHeaderText(null);
+        return confirm.showAndWait().filter(b -> b == ButtonType.YES).isPresent();
+    }
+
+    /** 通常はウィンドウを閉じる前に saveBeforeExit で保存済み。ここでは残りを書いて閉じるだけ */
+    @Override
+    public void stop() {
+        // 終了時は待ってよいので、表示中のページをこのスレッドで書き戻す
+        if (repository != null) {
+            try {
+                repository.savePage(students, pageIds);
+                repository.close();
+            } catch (SQLException ex) {
+                System.err.println("DBへの保存に失敗しました: " + ex.getMessage());
             }
+            repository = null;
         }
+        if (workspace != null) {
+            try {
+                if (activeClass != null && rosterEdited) workspace.update(activeClass, students, subjectTotalDays);
+                workspace.close();
+            } catch (IOException ex) {
+                System.err.println("クラスの保存に失敗しました: " + ex.getMessage());
+            }
+        }
+        auditLogs.values().forEach(AuditLog::close);
+        changeFeed.close();
+    }
 
-        statsLabel.setText(sb.toString());
+    // ═══════════════════════ Background Jobs ═══════════════════════
+
+    /** 重い処理をデーモンスレッドで実行し、完了/失敗をFXスレッドで通知する */
+    private <T> void runInBackground(String name, Node trigger, Callable<T> job,
+                                     Consumer<T> onSuccess) {
+        Task<T> task = new Task<>() {
+            @Override protected T call() throws Exception { return job.call(); }
+        };
+        task.setOnSucceeded(e -> {
+            if (trigger != null) trigger.setDisable(false);
+            onSuccess.accept(task.getValue());
+        });
+        task.setOnFailed(e -> {
+            if (trigger != null) trigger.setDisable(false);
+            showAlert("処理に失敗しました: " + task.getException().getMessage(), Alert.AlertType.ERROR);
+        });
+        if (trigger != null) trigger.setDisable(true);
+        Thread t = new Thread(task, name);
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // ═══════════════════════ Stats Update ═══════════════════════
+
+    private void updateStats() {
+        long t0 = Metrics.start();
+        // 空の名簿で早く抜けた場合も記録する
+        try {
+            if (students.isEmpty()) { statsLabel.setText("生徒が登録されていません"); return; }
+
+            Student sel = tableView.getSelectionModel().getSelectedItem();
+            StringBuilder sb = new StringBuilder();
+
+            double classAvg = students.stream().mapToDouble(Student::getOverallAverage).average().orElse(0);
+            if (repository != null)
+                sb.append(String.format("👥 表示中のページの統計（全%d名中 %d〜%d番目）\n",
+                        pageTotal, pageOffset + 1, pageOffset + students.size()));
+            else
+                sb.append("👥 全体統計\n");
+            sb.append(String.format("  生徒数: %d名\n", students.size()));
+            sb.append(String.format("  クラス平均: %.1f点\n\n", classAvg));
+
+            sb.append("📊 評価分布\n");
+            for (String g : new String[]{"秀","優","良","可","不可"}) {
+                long cnt = students.stream().filter(s -> s.getOverallGradeLabel().equals(g)).count();
+                if (cnt > 0) sb.append(String.format("  %s: %d名\n", g, cnt));
+            }
+
+            if (repository != null && !dbGradeCounts.isEmpty()) {
+                sb.append("\n🗄 DB全体の科目別評価分布（保存済みの分）\n");
+                dbGradeCounts.forEach((subject, counts) -> {
+                    sb.append("  ").append(subject).append(":");
+                    for (String g : new String[]{"秀","優","良","可","不可","不可(出席)","-"}) {
+                        Long cnt = counts.get(g);
+                        if (cnt != null) sb.append(' ').append(g).append(' ').append(cnt);
+                    }
+                    sb.append('\n');
+                });
+            }
+
+            if (sel != null && !sel.getSubjectMap().isEmpty()) {
+                sb.append("\n─────────────────\n");
+                sb.append("👤 ").append(sel.getName()).append("\n");
+                sb.append(String.format("  総合平均: %.1f点\n", sel.getOverallAverage()));
+                sb.append("  評価: ").append(sel.getOverallGradeLabel()).append("\n\n");
+                sb.append("📝 科目別\n");
+                for (Map.Entry<String, Student.SubjectRecord> e : sel.getSubjectMap().entrySet()) {
+                    Student.SubjectRecord r = e.getValue();
+                    Double comp = r.compositeScore();
+                    sb.append(String.format("  %s\n", e.getKey()));
+                    sb.append(String.format("    出席: %d/%d回（%.0f%%）\n",
+                            r.attendedDays, r.totalDays, r.attendanceRate() * 100));
+                    sb.append(String.format("    出席点: %.1f  テスト: %s\n",
+                            r.attendanceScore(),
+                            r.testScore != null ? String.format("%.0f", r.testScore) : "-"));
+                    sb.append(String.format("    総合: %s  評価: %s\n",
+                            comp != null ? String.format("%.1f", comp) : "-",
+                            r.gradeLabel()));
+                    if (whatIf != null) {
+                        sb.append("    必要点:");
+                        for (int b = 0; b < WhatIfSolver.BANDS.length; b++)
+                            sb.append(" ").append(WhatIfSolver.BANDS[b])
+                              .append(WhatIfSolver.format(whatIf.minTestScore(sel, e.getKey(), b)));
+                        Integer a = whatIf.remainingAbsences(sel, e.getKey());
+                        sb.append(String.format("\n    残り欠席可能: %s\n", a == null ? "-" : a < 0 ? "出席不足" : a + "回"));
+                    }
+                }
+            }
+
+            if (sel != null && !termHistory.isEmpty()) {
+                Map<String, Double> history = termHistory.overallHistoryOf(sel.getStudentId());
+                if (!history.isEmpty()) {
+                    sb.append("\n📅 学期推移（総合平均）\n");
+                    history.forEach((term, avg) ->
+                        sb.append(String.format("  %s: %.1f点\n", term, avg)));
+
+                    sb.append("\n📅 科目別の学期推移（総合点・評価）\n");
+                    for (String subject : subjectTotalDays.keySet()) {
+                        List<TermHistory.TermValue> values = termHistory.historyOf(sel.getStudentId(), subject);
+                        if (values.isEmpty()) continue;
+                        sb.append("  ").append(subject).append("\n    ");
+                        sb.append(values.stream().map(v -> {
+                            Double comp = v.record().compositeScore();
+                            return v.term() + " " + (comp != null ? String.format("%.1f", comp) : "-") + "(" + v.record().gradeLabel() + ")";
+                        }).collect(Collectors.joining(" → "))).append("\n");
+                    }
+                }
+            }
+
+            statsLabel.setText(sb.toString());
+        } finally {
+            Metrics.stop("updateStats", t0);
+        }
     }
 
     // ═══════════════════════ Table Rebuild ═══════════════════════
 
     @SuppressWarnings("unchecked")
     private void rebuildTable() {
+        long t0 = Metrics.start();
         tableView.getColumns().clear();
 
         TableColumn<Student, String> idCol = new TableColumn<>("学籍番号");
-        idCol.setCellValueFactory(new PropertyValueFactory<>("studentId"));
+        idCol.setCellValueFactory(data -> new ReadOnlyStringWrapper(data.getValue().getStudentId()));
         idCol.setPrefWidth(90);
 
         TableColumn<Student, String> nameCol = new TableColumn<>("氏名");
-        nameCol.setCellValueFactory(new PropertyValueFactory<>("name"));
+        nameCol.setCellValueFactory(data -> new ReadOnlyStringWrapper(data.getValue().getName()));
         nameCol.setPrefWidth(100);
 
         tableView.getColumns().addAll(idCol, nameCol);
@@ -748,6 +1508,7 @@ public class MainApp extends Application {
 
         tableView.getColumns().addAll(avgCol, gradeCol);
         tableView.refresh();
+        Metrics.stop("rebuildTable", t0);
     }
 
     // ═══════════════════════ Cell Factories ═══════════════════════
@@ -786,7 +1547,7 @@ public class MainApp extends Application {
 
     // ═══════════════════════ Helpers ═══════════════════════
 
-    private Button createButton(String text, String color) {
+    static Button createButton(String text, String color) {
         Button btn = new Button(text);
         btn.setStyle("-fx-background-color: " + color + "; -fx-text-fill: white; " +
                      "-fx-font-weight: bold; -fx-background-radius: 5; -fx-cursor: hand; -fx-padding: 5 11;");
@@ -795,14 +1556,14 @@ public class MainApp extends Application {
         return btn;
     }
 
-    private Label boldLabel(String text, double width) {
+    static Label boldLabel(String text, double width) {
         Label l = new Label(text);
         l.setStyle("-fx-font-weight: bold; -fx-font-size: 12;");
         l.setMinWidth(width);
         return l;
     }
 
-    private void showAlert(String msg, Alert.AlertType type) {
+    static void showAlert(String msg, Alert.AlertType type) {
         Alert alert = new Alert(type, msg, ButtonType.OK);
         alert.setTitle(type == Alert.AlertType.ERROR ? "エラー" : "情報");
         alert.setHeaderText(null);
@@ -811,7 +1572,7 @@ public class MainApp extends Application {
 
     private String formatScore(double v) { return String.format("%.1f", v); }
 
-    private String gradeStyle(String g) {
+    static String gradeStyle(String g) {
         return switch (g) {
             case "秀"       -> "-fx-text-fill: #8e44ad;";
             case "優"       -> "-fx-text-fill: #27ae60;";
@@ -823,7 +1584,7 @@ public class MainApp extends Application {
 
     // ═══════════════════════ Sample Data ═══════════════════════
 
-    private void addSampleData() {
+    private static List<Student> buildSampleData(Map<String, Integer> subjectTotalDays) {
         // {出席日数, テスト点} × 科目順 [数学20, 英語18, 国語20, 理科16, 社会15]
         Object[][] data = {
             {"S001", "山田 太郎",  new int[][]{{18,85},{15,90},{17,80},{13,88},{12,75}}},
@@ -833,6 +1594,7 @@ public class MainApp extends Application {
             {"S005", "渡辺 悠斗",  new int[][]{{16,62},{14,70},{18,68},{12,58},{12,65}}},
         };
         String[] subjectNames = subjectTotalDays.keySet().toArray(new String[0]);
+        List<Student> list = new ArrayList<>(data.length);
         for (Object[] row : data) {
             Student st = new Student((String) row[0], (String) row[1]);
             int[][] scores = (int[][]) row[2];
@@ -842,8 +1604,29 @@ public class MainApp extends Application {
                 rec.attendedDays = scores[i][0];
                 rec.testScore    = (double) scores[i][1];
             }
-            students.add(st);
+            list.add(st);
         }
+        return list;
+    }
+
+    private SampleDataGenerator createGenerator(Map<String, String> params) {
+        if (!params.containsKey("students")) return null;
+        try {
+            return new SampleDataGenerator(
+                    Long.parseLong(params.getOrDefault("seed", "42")),
+                    Integer.parseInt(params.get("students")),
+                    Integer.parseInt(params.getOrDefault("subjects", "5")));
+        } catch (IllegalArgumentException ex) {
+            System.err.println("生成データの指定が不正です: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    /** 生成データ（バックグラウンドで作り、setAll で一括追加する） */
+    private static List<Student> generateStudents(SampleDataGenerator generator) {
+        List<Student> list = new ArrayList<>(generator.getStudentCount());
+        generator.generate(list::add);
+        return list;
     }
 
     public static void main(String[] args) { launch(args); }
@@ -0,0 +1,194 @@
+package com.grademanager;
+
+import jdk.jfr.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import javax.management.ObjectName;
+
+/**
+ * 計測（タイマー・カウンター）
+ *
+ * 有効化: -Dgrademanager.metrics=true
+ *   - JMX: com.grademanager:type=Metrics に公開
+ *   - JFR: -Dgrademanager.metrics.jfr=true で com.grademanager.Timing イベントも発行
+ *
+ * 無効時は ENABLED が static final の false なので、
+ * start()/stop() は JIT でほぼ消え、計測コストはかからない。
+ *
+ * 使い方:
+ *   long t = Metrics.start();
+ *   ... 処理 ...
+ *   Metrics.stop("updateStats", t);
+ */
+public final class Metrics {
+
+    public static final boolean ENABLED = Boolean.getBoolean("grademanager.metrics");
+    private static final boolean JFR_ENABLED = ENABLED && Boolean.getBoolean("grademanager.metrics.jfr");
+
+    /** ヒストグラムのバケット数（マイクロ秒の2のべき乗ごと） */
+    private static final int BUCKETS = 32;
+
+    private static final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static volatile IntSupplier studentCount = () -> 0;
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer()
+                        .registerMBean(new Bean(), new ObjectName("com.grademanager:type=Metrics"));
+            } catch (Exception ex) {
+                System.err.println("Metrics: JMX登録に失敗しました: " + ex.getMessage());
+            }
+        }
+    }
+
+    private Metrics() {}
+
+    // ── 計測 API ────────────────────────────────────────────────
+
+    /** 計測開始（無効時は 0） */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0L;
+    }
+
+    /** 計測終了: start() からの経過時間を name のタイマーに記録 */
+    public static void stop(String name, long startNanos) {
+        if (!ENABLED) return;
+        record(name, System.nanoTime() - startNanos);
+    }
+
+    /** 計測済みの所要時間を直接記録（起動時間など） */
+    public static void record(String name, long nanos) {
+        if (!ENABLED) return;
+        timers.computeIfAbsent(name, k -> new Timer()).record(nanos);
+        if (JFR_ENABLED) {
+            TimingEvent ev = new TimingEvent();
+            if (ev.shouldCommit()) {
+                ev.operation = name;
+                ev.nanos = nanos;
+                ev.commit();
+            }
+        }
+    }
+
+    /** カウンターに加算（エクスポートのバイト数など） */
+    public static void count(String name, long amount) {
+        if (!ENABLED) return;
+        counters.computeIfAbsent(name, k -> new LongAdder()).add(amount);
+    }
+
+    /** 生徒1人あたりのヒープ算出用に生徒数の取得元を登録 */
+    public static void setStudentCount(IntSupplier supplier) {
+        studentCount = supplier;
+    }
+
+    /** 使用中ヒープ ÷ 生徒数（生徒がいなければ 0） */
+    public static long heapBytesPerStudent() {
+        int n = studentCount.getAsInt();
+        if (n <= 0) return 0;
+        Runtime rt = Runtime.getRuntime();
+        return (rt.totalMemory() - rt.freeMemory()) / n;
+    }
+
+    // ── 表示用 ────────────────────────────────────────────────
+
+    /** 診断パネル用のテキスト */
+    public static String report() {
+        if (!ENABLED) return "計測は無効です\n（-Dgrademanager.metrics=true で起動すると有効になります）";
+        StringBuilder sb = new StringBuilder();
+        sb.append("⏱ タイマー（回数 / 平均 / p95 / 最大 ms）\n");
+        new TreeMap<>(timers).forEach((name, t) ->
+            sb.append(String.format("  %-20s %6d / %7.2f / %7.2f / %7.2f\n",
+                    name, t.count.sum(), t.meanMillis(), t.percentileMillis(0.95), t.max.get() / 1e6)));
+        if (!counters.isEmpty()) {
+            sb.append("\n🔢 カウンター\n");
+            new TreeMap<>(counters).forEach((name, c) ->
+                sb.append(String.format("  %-20s %,d\n", name, c.sum())));
+        }
+        sb.append(String.format("\n💾 ヒープ/生徒: %,d バイト（%d名）\n",
+                heapBytesPerStudent(), studentCount.getAsInt()));
+        return sb.toString();
+    }
+
+    // ── タイマー ────────────────────────────────────────────────
+
+    private static final class Timer {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong max = new AtomicLong();
+        final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+        Timer() { for (int i = 0; i < BUCKETS; i++) buckets[i] = new LongAdder(); }
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            max.accumulateAndGet(nanos, Math::max);
+            long micros = nanos / 1000;
+            buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros))].increment();
+        }
+
+        double meanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : totalNanos.sum() / 1e6 / n;
+        }
+
+        /** バケット上限で近似したパーセンタイル */
+        double percentileMillis(double p) {
+            long n = count.sum(), seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets[i].sum();
+                if (seen >= Math.ceil(n * p)) return Math.min((1L << i) / 1000.0, max.get() / 1e6);
+            }
+            return max.get() / 1e6;
+        }
+    }
+
+    // ── JFR ────────────────────────────────────────────────
+
+    @Name("com.grademanager.Timing")
+    @Label("Grade Manager Timing")
+    @Category("Grade Manager")
+    static class TimingEvent extends Event {
+        @Label("Operation") String operation;
+        @Label("Duration") @Timespan(Timespan.NANOSECONDS) long nanos;
+    }
+
+    // ── JMX ────────────────────────────────────────────────
+
+    public interface MetricsMXBean {
+        Map<String, Long> getCounts();
+        Map<String, Double> getMeanMillis();
+        Map<String, Double> getP95Millis();
+        Map<String, Double> getMaxMillis();
+        Map<String, Long> getCounters();
+        long getHeapBytesPerStudent();
+    }
+
+    private static final class Bean implements MetricsMXBean {
+        @Override public Map<String, Long> getCounts() { return collect(t -> t.count.sum()); }
+        @Override public Map<String, Double> getMeanMillis() { return collect(Timer::meanMillis); }
+        @Override public Map<String, Double> getP95Millis() { return collect(t -> t.percentileMillis(0.95)); }
+        @Override public Map<String, Double> getMaxMillis() { return collect(t -> t.max.get() / 1e6); }
+        @Override public long getHeapBytesPerStudent() { return heapBytesPerStudent(); }
+
+        @Override public Map<String, Long> getCounters() {
+            Map<String, Long> m = new TreeMap<>();
+            counters.forEach((k, v) -> m.put(k, v.sum()));
+            return m;
+        }
+
+        private <V> Map<String, V> collect(Function<Timer, V> f) {
+            Map<String, V> m = new TreeMap<>();
+            timers.forEach((k, t) -> m.put(k, f.apply(t)));
+            return m;
+        }
+    }
+}
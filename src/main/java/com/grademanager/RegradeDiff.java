@@ -0,0 +1,123 @@
+package com.grademanager;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 判定基準を変えたときの再判定と差分
+ *
+ * 全生徒・全科目の記録を現行基準と変更案の両方で判定し、評価が変わったものだけを集める。
+ * 生徒単位で並列に走査し（共通 ForkJoinPool）、結果は科目ごとの集計と生徒ごとの変更一覧にまとめる。
+ */
+public class RegradeDiff {
+
+    /** 評価が変わった1件 */
+    public record Change(Student student, String subject, Double composite, String before, String after) {
+        /** 合格 → 不可 */
+        public boolean newlyFailing() { return GradingRule.isPass(before) && GradingRule.isFail(after); }
+        /** 不可 → 合格（テスト未入力の「-」は含めない） */
+        public boolean newlyPassing() { return GradingRule.isFail(before) && GradingRule.isPass(after); }
+    }
+
+    /** 科目ごとの集計 */
+    public record SubjectSummary(String subject, int records, int changed, int newlyFailing, int newlyPassing,
+                                 Map<String, Integer> transitions) {}
+
+    /** 比較結果 */
+    public record Report(GradingRule current, GradingRule proposed, int students, long records,
+                         List<SubjectSummary> subjects, List<Change> changes) {
+
+        /** 生徒ごとの変更（名簿順） */
+        public Map<Student, List<Change>> byStudent() {
+            return changes.stream().collect(Collectors.groupingBy(Change::student, LinkedHashMap::new, Collectors.toList()));
+        }
+
+        /** 画面・ログ用の要約（生徒の一覧は maxStudents 名まで） */
+        public String format(int maxStudents) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("現行: ").append(current).append('\n');
+            sb.append("変更案: ").append(proposed).append('\n');
+            sb.append(String.format("対象 %,d名・%,d記録 → 評価が変わる記録 %,d件%n%n", students, records, changes.size()));
+
+            sb.append(String.format("%-8s %8s %8s %8s %8s  %s%n", "科目", "記録数", "変更", "→不可", "→合格", "内訳"));
+            for (SubjectSummary s : subjects) {
+                String detail = s.transitions().entrySet().stream()
+                        .map(e -> e.getKey() + " " + e.getValue())
+                        .collect(Collectors.joining(", "));
+                sb.append(String.format("%-8s %8d %8d %8d %8d  %s%n",
+                        s.subject(), s.records(), s.changed(), s.newlyFailing(), s.newlyPassing(), detail));
+            }
+
+            Map<Student, List<Change>> byStudent = byStudent();
+            sb.append(String.format("%n評価が変わる生徒: %,d名%n", byStudent.size()));
+            int shown = 0;
+            for (Map.Entry<Student, List<Change>> e : byStudent.entrySet()) {
+                if (shown++ >= maxStudents) {
+                    sb.append(String.format("…ほか %,d名%n", byStudent.size() - maxStudents));
+                    break;
+                }
+                Student st = e.getKey();
+                sb.append(st.getStudentId()).append(' ').append(st.getName()).append(": ");
+                sb.append(e.getValue().stream()
+                        .map(c -> String.format("%s %s→%s(%s)", c.subject(), c.before(), c.after(),
+                                c.composite() == null ? "-" : String.format("%.1f", c.composite())))
+                        .collect(Collectors.joining(", ")));
+                sb.append('\n');
+            }
+            return sb.toString();
+        }
+    }
+
+    public static Report run(List<Student> students, Collection<String> subjects,
+                             GradingRule current, GradingRule proposed) {
+        List<String> subjectList = new ArrayList<>(subjects);
+        int n = students.size(), m = subjectList.size();
+
+        // 生徒ごとに変更を集め、名簿順のまま連結する
+        List<Change> changes = IntStream.range(0, n).parallel()
+                .mapToObj(i -> diffStudent(students.get(i), subjectList, current, proposed))
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+
+        // 科目ごとの記録数も並列に数える
+        int[] records = new int[m];
+        IntStream.range(0, m).parallel().forEach(j -> {
+            String subject = subjectList.get(j);
+            int c = 0;
+            for (Student st : students) if (st.getRecord(subject) != null) c++;
+            records[j] = c;
+        });
+
+        Map<String, List<Change>> bySubject = changes.stream().collect(Collectors.groupingBy(Change::subject));
+        List<SubjectSummary> summaries = new ArrayList<>(m);
+        long total = 0;
+        for (int j = 0; j < m; j++) {
+            String subject = subjectList.get(j);
+            List<Change> list = bySubject.getOrDefault(subject, List.of());
+            Map<String, Integer> transitions = new TreeMap<>();
+            int failing = 0, passing = 0;
+            for (Change c : list) {
+                transitions.merge(c.before() + "→" + c.after(), 1, Integer::sum);
+                if (c.newlyFailing()) failing++;
+                if (c.newlyPassing()) passing++;
+            }
+            summaries.add(new SubjectSummary(subject, records[j], list.size(), failing, passing, transitions));
+            total += records[j];
+        }
+        return new Report(current, proposed, n, total, summaries, changes);
+    }
+
+    private static List<Change> diffStudent(Student st, List<String> subjects, GradingRule current, GradingRule proposed) {
+        List<Change> result = null;
+        for (String subject : subjects) {
+            Student.SubjectRecord r = st.getRecord(subject);
+            if (r == null) continue;
+            String before = current.grade(r), after = proposed.grade(r);
+            if (before.equals(after)) continue;
+            if (result == null) result = new ArrayList<>(2);
+            result.add(new Change(st, subject, r.compositeScore(), before, after));
+        }
+        return result == null ? List.of() : result;
+    }
+}
@@ -0,0 +1,235 @@
+package com.grademanager;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 生徒ごとの成績表（HTML）の一括作成
+ *
+ * テンプレート（resources の report/sheet.html・subject-row.html）の {{名前}} を埋めて、
+ * 1人1ファイルの成績表を zip にまとめて書き出す。
+ *   - 描画は上限付きのスレッドプールで並列に行う
+ *   - 描画中・書き出し待ちの成績表は一定数まで（それを超えると先頭の完了を待ってから次を投入）
+ *   - zip には名簿順に書き出すため、並列でも出力は毎回同じ並びになる
+ */
+public class ReportGenerator {
+
+    /** 描画済みの1枚 */
+    private record Sheet(String fileName, byte[] html) {}
+
+    private static final Template SHEET = Template.load("report/sheet.html");
+    private static final Template ROW   = Template.load("report/subject-row.html");
+
+    private final List<Student> students;
+    private final Map<String, Integer> subjectTotalDays;
+    private final String title;
+    private final String generatedAt = LocalDate.now().toString();
+    private final int threads;
+
+    /**
+     * 生成中も画面で編集できるよう、呼び出し側（FXスレッド）で生徒と科目記録を複製してから
+     * バックグラウンドで書き出す想定
+     */
+    public ReportGenerator(List<Student> students, Map<String, Integer> subjectTotalDays, String title) {
+        this(students, subjectTotalDays, title, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ReportGenerator(List<Student> students, Map<String, Integer> subjectTotalDays, String title, int threads) {
+        this.students = new ArrayList<>(students.size());
+        for (Student s : students) this.students.add(s.copy());
+        this.subjectTotalDays = new LinkedHashMap<>(subjectTotalDays);
+        this.title = title;
+        this.threads = Math.max(1, threads);
+    }
+
+    /** 書き出した成績表の枚数を返す */
+    public long export(File file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16)) {
+            return export(out);
+        }
+    }
+
+    public long export(OutputStream out) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "report-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        int window = threads * 4;
+        Deque<Future<Sheet>> inFlight = new ArrayDeque<>(window);
+        Set<String> usedNames = new HashSet<>();
+        long count = 0;
+        try {
+            ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+            for (Student st : students) {
+                if (inFlight.size() >= window) count += writeNext(zip, inFlight, usedNames);
+                inFlight.add(pool.submit(() -> render(st)));
+            }
+            while (!inFlight.isEmpty()) count += writeNext(zip, inFlight, usedNames);
+            zip.finish();
+            zip.flush();
+        } finally {
+            pool.shutdownNow();
+        }
+        return count;
+    }
+
+    /** 先頭の成績表の完成を待って zip に書く */
+    private static int writeNext(ZipOutputStream zip, Deque<Future<Sheet>> inFlight, Set<String> usedNames) throws IOException {
+        Sheet sheet;
+        try {
+            sheet = inFlight.removeFirst().get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("成績表の作成が中断されました");
+        } catch (ExecutionException ex) {
+            throw new IOException("成績表の作成に失敗しました: " + ex.getCause(), ex.getCause());
+        }
+        String name = sheet.fileName();
+        for (int n = 2; !usedNames.add(name); n++) name = sheet.fileName().replaceFirst("\\.html$", "-" + n + ".html");
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(sheet.html());
+        zip.closeEntry();
+        return 1;
+    }
+
+    // ═══════════════════════ Rendering ═══════════════════════
+
+    /** 1人分の成績表を描画する（ワーカースレッドで実行） */
+    private Sheet render(Student st) {
+        StringBuilder rows = new StringBuilder(512);
+        StringBuilder reasons = new StringBuilder();
+        Map<String, String> v = new HashMap<>();
+        for (Map.Entry<String, Integer> e : subjectTotalDays.entrySet()) {
+            String subject = e.getKey();
+            Student.SubjectRecord r = st.getRecord(subject);
+            if (r == null) continue;
+            Double comp = r.compositeScore();
+            String grade = r.gradeLabel();
+            v.clear();
+            v.put("subject", escape(subject));
+            v.put("attended", String.valueOf(r.attendedDays));
+            v.put("total", String.valueOf(r.totalDays));
+            v.put("rate", String.format("%.0f%%", r.attendanceRate() * 100));
+            v.put("rateClass", r.hasSufficientAttendance() ? "" : "ng");
+            v.put("attendanceScore", String.format("%.1f", r.attendanceScore()));
+            v.put("test", r.testScore != null ? String.format("%.0f", r.testScore) : "-");
+            v.put("composite", comp != null ? String.format("%.1f", comp) : "-");
+            v.put("grade", escape(grade));
+            v.put("gradeClass", gradeClass(grade));
+            ROW.render(v, rows);
+
+            String reason = failReason(r);
+            if (reason != null) reasons.append("  <li>").append(escape(subject)).append(": ").append(reason).append("</li>\n");
+        }
+
+        v.clear();
+        v.put("title", escape(title));
+        v.put("studentId", escape(st.getStudentId()));
+        v.put("name", escape(st.getName()));
+        v.put("generatedAt", generatedAt);
+        v.put("rows", rows.toString());
+        v.put("average", String.format("%.1f", st.getOverallAverage()));
+        String overall = st.getOverallGradeLabel();
+        v.put("overallGrade", escape(overall));
+        v.put("overallClass", gradeClass(overall));
+        v.put("reasons", reasons.length() == 0 ? ""
+                : "<div class=\"reasons\">不可の理由\n<ul>\n" + reasons + "</ul>\n</div>\n");
+        StringBuilder html = new StringBuilder(4096);
+        SHEET.render(v, html);
+        String fileName = (st.getStudentId() + "_" + st.getName()).replaceAll("[\\\\/:*?\"<>|\\s]", "_") + ".html";
+        return new Sheet(fileName, html.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** 不可の理由（不可でなければ null） */
+    static String failReason(Student.SubjectRecord r) {
+        if (!r.hasSufficientAttendance()) {
+            int need = WhatIfSolver.minAttendedDays(r.totalDays);
+            return String.format("出席不足（%d/%d回・%.0f%%、合格には%d回以上の出席が必要）",
+                    r.attendedDays, r.totalDays, r.attendanceRate() * 100, need);
+        }
+        Double comp = r.compositeScore();
+        if (comp == null) return null;
+        if (GradingRule.isFail(r.gradeLabel()))
+            return String.format("総合点不足（%.1f点、合格は60点以上）", comp);
+        return null;
+    }
+
+    private static String gradeClass(String grade) {
+        return switch (grade) {
+            case "秀" -> "g-s";
+            case "優" -> "g-a";
+            case "良" -> "g-b";
+            case "可" -> "g-c";
+            case "不可", "不可(出席)" -> "g-f";
+            default -> "";
+        };
+    }
+
+    private static String escape(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '<' -> sb.append("&lt;");
+                case '>' -> sb.append("&gt;");
+                case '&' -> sb.append("&amp;");
+                case '"' -> sb.append("&quot;");
+                default  -> sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    // ═══════════════════════ Template ═══════════════════════
+
+    /**
+     * {{名前}} を値で置き換えるだけの簡単なテンプレート。
+     * 読み込み時に固定部分と名前に分けておき、描画では順に連結するだけにする。
+     */
+    static final class Template {
+        private final String[] literals;
+        private final String[] keys;
+
+        private Template(String text) {
+            List<String> lits = new ArrayList<>();
+            List<String> ks = new ArrayList<>();
+            int pos = 0;
+            while (true) {
+                int open = text.indexOf("{{", pos);
+                int close = open < 0 ? -1 : text.indexOf("}}", open + 2);
+                if (close < 0) break;
+                lits.add(text.substring(pos, open));
+                ks.add(text.substring(open + 2, close).trim());
+                pos = close + 2;
+            }
+            lits.add(text.substring(pos));
+            this.literals = lits.toArray(new String[0]);
+            this.keys = ks.toArray(new String[0]);
+        }
+
+        static Template load(String resource) {
+            try (InputStream in = ReportGenerator.class.getResourceAsStream(resource)) {
+                if (in == null) throw new IllegalStateException("テンプレートがありません: " + resource);
+                return new Template(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        /** 値のない名前は空文字にする */
+        void render(Map<String, String> values, StringBuilder out) {
+            for (int i = 0; i < keys.length; i++) {
+                out.append(literals[i]);
+                String v = values.get(keys[i]);
+                if (v != null) out.append(v);
+            }
+            out.append(literals[keys.length]);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.grademanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * 負荷試験用の成績データ生成器
+ *
+ * シード・生徒数・科目数が同じなら常に同じデータを生成する。
+ * 生徒ごとに (シード, 通し番号) から乱数を作るため、先頭から順に流すだけで
+ * 全員をメモリに持たずに済み、何百万人分でもモデルやファイルへ直接流し込める。
+ *
+ * 分布:
+ *   出席率   ≈ 正規分布（平均88%・標準偏差8%）
+ *   テスト点 ≈ 正規分布（平均68点・標準偏差15点）
+ *   境界値   一部の記録はわざと 出席率80%ちょうど/1日不足、総合点60点ちょうど付近/その1点下 にする
+ *
+ * コマンドライン:
+ *   java -cp grade-manager.jar com.grademanager.SampleDataGenerator 生徒数 科目数 シード 出力.gmc
+ */
+public class SampleDataGenerator implements Iterable<Student> {
+
+    private static final String[] SUBJECT_NAMES = {
+        "数学", "英語", "国語", "理科", "社会", "音楽", "美術", "体育", "技術", "家庭",
+        "情報", "地理", "歴史", "公民", "物理", "化学", "生物", "地学", "古典", "書道",
+    };
+    private static final String[] FAMILY_NAMES = {
+        "佐藤", "鈴木", "高橋", "田中", "伊藤", "渡辺", "山本", "中村", "小林", "加藤",
+        "吉田", "山田", "佐々木", "山口", "松本", "井上", "木村", "林", "斎藤", "清水",
+    };
+    private static final String[] GIVEN_NAMES = {
+        "太郎", "花子", "健", "美咲", "悠斗", "陽菜", "蓮", "結衣", "大翔", "葵",
+        "湊", "凛", "樹", "さくら", "颯太", "芽依", "優斗", "莉子", "蒼", "愛",
+    };
+
+    /** 境界値（出席80%付近・総合60点付近）にする割合 */
+    private static final double BORDERLINE_RATE = 0.05;
+
+    private final long seed;
+    private final int studentCount;
+    private final Map<String, Integer> subjectTotalDays;
+
+    public SampleDataGenerator(long seed, int studentCount, int subjectCount) {
+        if (studentCount < 0) throw new IllegalArgumentException("生徒数は0以上で指定してください");
+        if (subjectCount < 1) throw new IllegalArgumentException("科目数は1以上で指定してください");
+        this.seed = seed;
+        this.studentCount = studentCount;
+        this.subjectTotalDays = new LinkedHashMap<>();
+        SplittableRandom rnd = new SplittableRandom(seed);
+        for (int i = 0; i < subjectCount; i++) {
+            String name = i < SUBJECT_NAMES.length ? SUBJECT_NAMES[i] : "科目" + (i + 1);
+            subjectTotalDays.put(name, 15 + rnd.nextInt(6)); // 15〜20回
+        }
+    }
+
+    /** 科目名 → 総授業日数 */
+    public Map<String, Integer> getSubjectTotalDays() { return Collections.unmodifiableMap(subjectTotalDays); }
+
+    public int getStudentCount() { return studentCount; }
+
+    /** 通し番号 index の生徒を生成（同じ index なら常に同じ内容） */
+    public Student student(int index) {
+        SplittableRandom rnd = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + index);
+        Student st = new Student(String.format("S%07d", index + 1),
+                FAMILY_NAMES[rnd.nextInt(FAMILY_NAMES.length)] + " " + GIVEN_NAMES[rnd.nextInt(GIVEN_NAMES.length)]);
+        for (Map.Entry<String, Integer> e : subjectTotalDays.entrySet()) {
+            int total = e.getValue();
+            Student.SubjectRecord rec = st.getOrCreateRecord(e.getKey(), total);
+            int minOk = (total * 4 + 4) / 5; // 8割に必要な最小出席日数（切り上げ）
+
+            if (rnd.nextDouble() < BORDERLINE_RATE) {
+                // 出席 8割ちょうど / 1日不足
+                rec.attendedDays = rnd.nextBoolean() ? minOk : minOk - 1;
+            } else {
+                double rate = clamp(0.88 + rnd.nextGaussian() * 0.08, 0, 1);
+                rec.attendedDays = (int) Math.round(rate * total);
+            }
+
+            if (rnd.nextDouble() < 0.02) {
+                rec.testScore = null; // 未入力
+            } else if (rnd.nextDouble() < BORDERLINE_RATE) {
+                // 総合点が60点に届く最小のテスト点 / その1点下（テスト点は実際の採点どおり整数）
+                double pass = Math.ceil(120 - rec.attendanceScore());
+                rec.testScore = clamp(rnd.nextBoolean() ? pass : pass - 1, 0, 100);
+            } else {
+                rec.testScore = (double) Math.round(clamp(68 + rnd.nextGaussian() * 15, 0, 100));
+            }
+        }
+        return st;
+    }
+
+    /** 全生徒を順に渡す */
+    public void generate(Consumer<Student> sink) {
+        for (int i = 0; i < studentCount; i++) sink.accept(student(i));
+    }
+
+    @Override
+    public Iterator<Student> iterator() {
+        return new Iterator<>() {
+            private int next = 0;
+            @Override public boolean hasNext() { return next < studentCount; }
+            @Override public Student next() {
+                if (next >= studentCount) throw new NoSuchElementException();
+                return student(next++);
+            }
+        };
+    }
+
+    /** 全員をメモリに載せずに .gmc（列指向形式）へ書き出す。書き出した行数を返す */
+    public long writeTo(File file) throws IOException {
+        return new ColumnarExporter(this, studentCount, subjectTotalDays).export(file);
+    }
+
+    private static double clamp(double v, double min, double max) {
+        return Math.max(min, Math.min(max, v));
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.err.println("使い方: SampleDataGenerator 生徒数 科目数 シード 出力.gmc");
+            System.exit(2);
+        }
+        SampleDataGenerator gen = new SampleDataGenerator(
+                Long.parseLong(args[2]), Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+        long t0 = System.nanoTime();
+        long rows = gen.writeTo(new File(args[3]));
+        System.out.printf("%,d行を書き出しました（%.1f秒）%n", rows, (System.nanoTime() - t0) / 1e9);
+    }
+}
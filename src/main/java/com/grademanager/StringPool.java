@@ -0,0 +1,144 @@
+package com.grademanager;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 文字列の辞書（氏名・学籍番号用）
+ *
+ * 文字列を UTF-8 のバイト列として1つの領域（アリーナ）に詰めて1回だけ保存し、
+ * int のハンドルで参照する。同じ文字列は同じハンドルになる。
+ * 生徒ごとに String オブジェクトや StringProperty を持たずに済むため、大人数の名簿でヒープが小さくなる。
+ *
+ *   -Dgrademanager.pool.offheap=true でアリーナをヒープ外（ダイレクトバッファ）に置く
+ *
+ * 追記のみで、使われなくなった文字列の領域は回収しない。
+ * 登録は排他で行い、取得は登録のたびに公開する確定済みの状態を読むだけなのでロックを取らない。
+ * 科目名のように種類の少ない文字列は {@link #canonical(String)} で同一インスタンスにそろえる。
+ */
+public final class StringPool {
+
+    private static final StringPool SHARED = new StringPool(Boolean.getBoolean("grademanager.pool.offheap"));
+    private static final ConcurrentHashMap<String, String> CANONICAL = new ConcurrentHashMap<>();
+
+    private final boolean offHeap;
+    private ByteBuffer arena;
+    /** offsets[h] 〜 offsets[h+1] がハンドル h のバイト列 */
+    private int[] offsets = new int[1024];
+    private int count;
+    /** ハッシュ表（ハンドル+1、0は空き） */
+    private int[] table = new int[2048];
+
+    /** 取得側が見る確定済みの状態。count 未満のハンドルのバイト列と offsets は以後書き換えない */
+    private record Published(ByteBuffer arena, int[] offsets, int count) {}
+    private volatile Published published;
+
+    public StringPool(boolean offHeap) {
+        this.offHeap = offHeap;
+        this.arena = allocate(1 << 16);
+        this.published = new Published(arena, offsets, 0);
+    }
+
+    /** アプリ全体で共有する辞書 */
+    public static StringPool shared() { return SHARED; }
+
+    /** 種類の少ない文字列（科目名など）を同一インスタンスにそろえる */
+    public static String canonical(String s) {
+        if (s == null) return null;
+        String prev = CANONICAL.putIfAbsent(s, s);
+        return prev != null ? prev : s;
+    }
+
+    // ── 登録・取得 ────────────────────────────────────────────────
+
+    /** 文字列を登録してハンドルを返す（登録済みなら同じハンドル） */
+    public synchronized int intern(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        int mask = table.length - 1;
+        int slot = hash(bytes) & mask;
+        while (table[slot] != 0) {
+            int h = table[slot] - 1;
+            if (equalsAt(h, bytes)) return h;
+            slot = (slot + 1) & mask;
+        }
+        int h = append(bytes);
+        table[slot] = h + 1;
+        if (count * 2 > table.length) rehash();
+        published = new Published(arena, offsets, count);
+        return h;
+    }
+
+    /** ハンドル → 文字列（ロックなし。ヒープ上のアリーナからは中間の配列を作らずに復元する） */
+    public String get(int handle) {
+        Published p = published;
+        if (handle < 0 || handle >= p.count) throw new IllegalArgumentException("不正なハンドル: " + handle);
+        int off = p.offsets[handle];
+        int len = p.offsets[handle + 1] - off;
+        if (p.arena.hasArray()) return new String(p.arena.array(), p.arena.arrayOffset() + off, len, StandardCharsets.UTF_8);
+        byte[] bytes = new byte[len];
+        p.arena.get(off, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int size() { return published.count; }
+
+    /** アリーナの使用バイト数 */
+    public long usedBytes() {
+        Published p = published;
+        return p.offsets[p.count];
+    }
+
+    // ── 内部 ────────────────────────────────────────────────
+
+    private int append(byte[] bytes) {
+        int end = offsets[count];
+        if (end + bytes.length > arena.capacity()) {
+            long need = (long) end + bytes.length;
+            int cap = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(need, (long) arena.capacity() * 2));
+            if (cap < need) throw new IllegalStateException("文字列領域が上限に達しました");
+            ByteBuffer grown = allocate(cap);
+            grown.put(0, arena, 0, end);
+            arena = grown;
+        }
+        arena.put(end, bytes);
+        if (count + 2 > offsets.length) offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        offsets[count + 1] = end + bytes.length;
+        return count++;
+    }
+
+    private boolean equalsAt(int h, byte[] bytes) {
+        int off = offsets[h];
+        if (offsets[h + 1] - off != bytes.length) return false;
+        for (int i = 0; i < bytes.length; i++) if (arena.get(off + i) != bytes[i]) return false;
+        return true;
+    }
+
+    private void rehash() {
+        int[] grown = new int[table.length * 2];
+        int mask = grown.length - 1;
+        for (int h = 0; h < count; h++) {
+            int slot = hashAt(h) & mask;
+            while (grown[slot] != 0) slot = (slot + 1) & mask;
+            grown[slot] = h + 1;
+        }
+        table = grown;
+    }
+
+    private static int hash(byte[] bytes) {
+        int h = 1;
+        for (byte b : bytes) h = 31 * h + b;
+        return h ^ (h >>> 16);
+    }
+
+    private int hashAt(int handle) {
+        int h = 1;
+        for (int i = offsets[handle]; i < offsets[handle + 1]; i++) h = 31 * h + arena.get(i);
+        return h ^ (h >>> 16);
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+}
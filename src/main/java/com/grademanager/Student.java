@@ -17,8 +17,15 @@ import java.util.*;
  */
 public class Student {
 
-    private final StringProperty name;
-    private final StringProperty studentId;
+    /** 氏名・学籍番号は共有辞書のハンドルで持つ */
+    private static final StringPool POOL = StringPool.shared();
+
+    private int nameHandle;
+    private int studentIdHandle;
+
+    /** JavaFX プロパティは要求されたときにだけ作る */
+    private StringProperty name;
+    private StringProperty studentId;
 
     /** 科目名 → SubjectRecord */
     private final Map<String, SubjectRecord> subjectMap;
@@ -39,6 +46,14 @@ public class Student {
             this.testScore = null;
         }
 
+        /** 同じ値を持つ別インスタンス（変更前後の比較用） */
+        public SubjectRecord copy() {
+            SubjectRecord c = new SubjectRecord(totalDays);
+            c.attendedDays = attendedDays;
+            c.testScore = testScore;
+            return c;
+        }
+
         /** 出席率 (0.0〜1.0) */
         public double attendanceRate() {
             if (totalDays <= 0) return 0.0;
@@ -81,20 +96,49 @@ public class Student {
     // ── コンストラクタ ────────────────────────────────────────────
 
     public Student(String studentId, String name) {
-        this.studentId = new SimpleStringProperty(studentId);
-        this.name = new SimpleStringProperty(name);
+        this.studentIdHandle = POOL.intern(studentId);
+        this.nameHandle = POOL.intern(name);
         this.subjectMap = new LinkedHashMap<>();
     }
 
+    /** 記録まで複製した写し（FXスレッドで取り、バックグラウンドの書き出しに渡す） */
+    public Student copy() {
+        Student c = new Student(getStudentId(), getName());
+        subjectMap.forEach((subject, rec) -> c.subjectMap.put(subject, rec.copy()));
+        return c;
+    }
+
     // ── プロパティ ────────────────────────────────────────────────
 
-    public String getName() { return name.get(); }
-    public void setName(String n) { name.set(n); }
-    public StringProperty nameProperty() { return name; }
+    public String getName() { return name != null ? name.get() : POOL.get(nameHandle); }
+
+    public void setName(String n) {
+        if (name != null) name.set(n);
+        else nameHandle = POOL.intern(n);
+    }
+
+    public StringProperty nameProperty() {
+        if (name == null) {
+            name = new SimpleStringProperty(POOL.get(nameHandle));
+            name.addListener((o, ov, nv) -> nameHandle = POOL.intern(nv));
+        }
+        return name;
+    }
+
+    public String getStudentId() { return studentId != null ? studentId.get() : POOL.get(studentIdHandle); }
 
-    public String getStudentId() { return studentId.get(); }
-    public void setStudentId(String id) { studentId.set(id); }
-    public StringProperty studentIdProperty() { return studentId; }
+    public void setStudentId(String id) {
+        if (studentId != null) studentId.set(id);
+        else studentIdHandle = POOL.intern(id);
+    }
+
+    public StringProperty studentIdProperty() {
+        if (studentId == null) {
+            studentId = new SimpleStringProperty(POOL.get(studentIdHandle));
+            studentId.addListener((o, ov, nv) -> studentIdHandle = POOL.intern(nv));
+        }
+        return studentId;
+    }
 
     public Map<String, SubjectRecord> getSubjectMap() { return subjectMap; }
 
@@ -102,7 +146,7 @@ public class Student {
 
     /** 科目を追加（総授業日数を設定） */
     public SubjectRecord getOrCreateRecord(String subject, int totalDays) {
-        return subjectMap.computeIfAbsent(subject, k -> new SubjectRecord(totalDays));
+        return subjectMap.computeIfAbsent(StringPool.canonical(subject), k -> new SubjectRecord(totalDays));
     }
 
     public SubjectRecord getRecord(String subject) {
@@ -160,6 +204,6 @@ public class Student {
 
     @Override
     public String toString() {
-        return studentId.get() + " - " + name.get();
+        return getStudentId() + " - " + getName();
     }
 }
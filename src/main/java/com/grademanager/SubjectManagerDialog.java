@@ -0,0 +1,136 @@
+package com.grademanager;
+
+import javafx.geometry.*;
+import javafx.scene.Node;
+import javafx.scene.control.*;
+import javafx.scene.layout.*;
+
+import java.util.*;
+
+/**
+ * 科目管理ダイアログ（科目の追加・削除・授業日数変更）
+ *
+ * ダイアログと各科目の行は使い回し、開くたびに増減した科目の行だけを追加・削除する。
+ * 削除・追加はその場で科目一覧に反映し、授業日数の変更は OK 時に反映する。
+ */
+class SubjectManagerDialog {
+
+    /** 1科目分の行 */
+    private final class Row {
+        final Label lbl = new Label();
+        final TextField daysField = new TextField();
+        final Button delBtn = MainApp.createButton("削除", "#e74c3c");
+
+        Row(String subject) {
+            lbl.setText(subject); lbl.setMinWidth(100);
+            daysField.setPrefWidth(80);
+            delBtn.setOnAction(ev -> {
+                subjects.remove(subject);
+                rows.remove(subject);
+                existingGrid.getChildren().removeAll(nodes());
+            });
+        }
+
+        Node[] nodes() { return new Node[]{lbl, daysField, delBtn}; }
+    }
+
+    private final Dialog<ButtonType> dialog = new Dialog<>();
+    private final GridPane existingGrid = new GridPane();
+    private final TextField newNameField = new TextField();
+    private final TextField newDaysField = new TextField();
+    /** 科目名 → 行（表示順） */
+    private final Map<String, Row> rows = new LinkedHashMap<>();
+    /** 表示中の科目一覧（MainApp の subjectTotalDays） */
+    private Map<String, Integer> subjects;
+
+    SubjectManagerDialog() {
+        dialog.setTitle("科目管理");
+        dialog.setHeaderText("科目の追加・削除・総授業日数の変更");
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+
+        VBox container = new VBox(10);
+        container.setPadding(new Insets(16));
+
+        // 既存科目リスト
+        Label existingTitle = new Label("登録済み科目");
+        existingTitle.setStyle("-fx-font-weight: bold;");
+        existingGrid.setHgap(10); existingGrid.setVgap(6);
+
+        // 新規追加
+        Separator sep = new Separator();
+        Label addTitle = new Label("新規科目を追加");
+        addTitle.setStyle("-fx-font-weight: bold;");
+        HBox addRow = new HBox(8); addRow.setAlignment(Pos.CENTER_LEFT);
+        newNameField.setPromptText("科目名"); newNameField.setPrefWidth(120);
+        newDaysField.setPromptText("総授業日数"); newDaysField.setPrefWidth(90);
+        Button addBtn = MainApp.createButton("追加", "#27ae60");
+        addRow.getChildren().addAll(newNameField, new Label("全"), newDaysField, new Label("回"), addBtn);
+
+        addBtn.setOnAction(ev -> {
+            String nm = newNameField.getText().trim();
+            String ds = newDaysField.getText().trim();
+            if (!nm.isEmpty() && !ds.isEmpty() && !subjects.containsKey(nm)) {
+                try {
+                    int days = Integer.parseInt(ds);
+                    if (days > 0) {
+                        subjects.put(nm, days);
+                        newNameField.clear(); newDaysField.clear();
+                        MainApp.showAlert("「" + nm + "」を追加しました。科目一覧はOK後に反映されます。", Alert.AlertType.INFORMATION);
+                    }
+                } catch (NumberFormatException ignored) {}
+            }
+        });
+
+        container.getChildren().addAll(existingTitle, existingGrid, sep, addTitle, addRow);
+        ScrollPane scroll = new ScrollPane(container);
+        scroll.setFitToWidth(true); scroll.setPrefHeight(360);
+        dialog.getDialogPane().setContent(scroll);
+        dialog.getDialogPane().setPrefWidth(420);
+    }
+
+    /** 科目一覧を表示して入力を待つ。OK なら true */
+    boolean showAndWait(Map<String, Integer> subjectTotalDays) {
+        this.subjects = subjectTotalDays;
+        syncRows();
+        rows.forEach((subject, row) -> row.daysField.setText(String.valueOf(subjectTotalDays.get(subject))));
+        newNameField.clear(); newDaysField.clear();
+        return dialog.showAndWait().filter(b -> b == ButtonType.OK).isPresent();
+    }
+
+    /** 日数の変更を反映 */
+    void applyTo(Map<String, Integer> subjectTotalDays) {
+        for (Map.Entry<String, Row> e : rows.entrySet()) {
+            if (subjectTotalDays.containsKey(e.getKey())) {
+                try {
+                    int d = Integer.parseInt(e.getValue().daysField.getText().trim());
+                    if (d > 0) subjectTotalDays.put(e.getKey(), d);
+                } catch (NumberFormatException ignored) {}
+            }
+        }
+    }
+
+    /** 科目の増減・並びの変化があったときだけ行を並べ直す */
+    private void syncRows() {
+        if (new ArrayList<>(rows.keySet()).equals(new ArrayList<>(subjects.keySet()))) return;
+
+        Map<String, Row> reordered = new LinkedHashMap<>();
+        for (String subject : subjects.keySet()) {
+            Row row = rows.remove(subject);
+            reordered.put(subject, row != null ? row : new Row(subject));
+        }
+        rows.clear();
+        rows.putAll(reordered);
+
+        existingGrid.getChildren().clear();
+        existingGrid.add(MainApp.boldLabel("科目名", 100), 0, 0);
+        existingGrid.add(MainApp.boldLabel("総授業日数", 90), 1, 0);
+        existingGrid.add(new Separator(), 0, 1, 3, 1);
+        int r = 2;
+        for (Row row : rows.values()) {
+            existingGrid.add(row.lbl,       0, r);
+            existingGrid.add(row.daysField, 1, r);
+            existingGrid.add(row.delBtn,    2, r);
+            r++;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.grademanager;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * 学期ごとの成績スナップショット
+ *
+ * 現在の成績（生徒・科目ごとの総授業日数・全 SubjectRecord）を不変の版として凍結する。
+ * 直前の学期と値が変わっていない記録・生徒・科目設定はそのインスタンスを共有するため、
+ * 20学期分を保存しても増えるのは変更のあった部分だけ。
+ *
+ * 学期ごとに学籍番号 → 生徒の索引を持つので、1人分の推移は学期数に比例する時間で引ける。
+ *
+ * 保存先（名簿ごとの terms.tsv）を持つ履歴は、{@link #save} で1学期分ずつ追記する。
+ * ファイルにも直前に保存した学期からの差分だけを書く（変わった生徒の S 行と、その中で変わった記録の R 行、
+ * 消えた記録・生徒の -R / -S 行）。読み込み時は直前の学期に差分を当てて組み立てる。
+ * 各学期は終端の行（E）まで書いて確定し、途中で切れた学期（行の途中で切れた場合も）は読み込み時に捨てる。
+ *   T 学期名 日時 / D 科目 総授業日数（毎学期すべて） / S 学籍番号 氏名 / R 科目 総授業日数 出席日数 テスト点 /
+ *   -R 科目 / -S 学籍番号 / E
+ */
+public class TermHistory {
+
+    /** 凍結された科目記録（不変） */
+    public record FrozenRecord(int totalDays, int attendedDays, Double testScore) {
+
+        static FrozenRecord of(Student.SubjectRecord r) {
+            return new FrozenRecord(r.totalDays, r.attendedDays, r.testScore);
+        }
+
+        boolean sameAs(Student.SubjectRecord r) {
+            return totalDays == r.totalDays && attendedDays == r.attendedDays
+                && Objects.equals(testScore, r.testScore);
+        }
+
+        /** 計算は Student.SubjectRecord と同じ式を使う */
+        public Student.SubjectRecord thaw() {
+            Student.SubjectRecord r = new Student.SubjectRecord(totalDays);
+            r.attendedDays = attendedDays;
+            r.testScore = testScore;
+            return r;
+        }
+
+        public Double compositeScore() { return thaw().compositeScore(); }
+        public String gradeLabel()     { return thaw().gradeLabel(); }
+    }
+
+    /** 凍結された生徒（不変） */
+    public record FrozenStudent(String studentId, String name, Map<String, FrozenRecord> records) {
+
+        /** Student.getOverallAverage と同じく入力済み科目のみで平均 */
+        public double overallAverage() {
+            return records.values().stream()
+                    .map(FrozenRecord::compositeScore).filter(Objects::nonNull)
+                    .mapToDouble(Double::doubleValue).average().orElse(0.0);
+        }
+    }
+
+    /** 1学期分の版 */
+    public record Term(String name, LocalDateTime takenAt,
+                       Map<String, Integer> subjectTotalDays,
+                       Map<String, FrozenStudent> students) {}
+
+    /** 学期ごとの1科目の値（推移表示用） */
+    public record TermValue(String term, FrozenRecord record) {}
+
+    /** 名簿ごとの保存ファイル名 */
+    public static final String FILE_NAME = "terms.tsv";
+
+    private final List<Term> terms = new ArrayList<>();
+    /** 保存先（null ならメモリ上だけ） */
+    private final Path file;
+    /** ファイルに最後に書き終えた学期（次の差分の基準） */
+    private Term lastSaved;
+
+    public TermHistory() { this(null); }
+
+    private TermHistory(Path file) { this.file = file; }
+
+    /** file の学期をすべて読み込む（なければ空の履歴）。以後の {@link #save} はこのファイルに追記する */
+    public static TermHistory load(Path file) throws IOException {
+        TermHistory history = new TermHistory(file);
+        if (!Files.exists(file)) return history;
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            TermReader reader = history.new TermReader();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] f = line.split("\t", -1);
+                if (f[0].equals("T")) {   // 終端のないまま次の学期が始まったら、前の学期は捨てる
+                    reader.begin(f);
+                } else if (reader.broken == null && reader.students != null) {
+                    try {
+                        reader.apply(f);
+                    } catch (RuntimeException ex) {   // 数値の形式違い・列の不足（書き込み途中で切れた行を含む）
+                        reader.broken = ex;
+                    }
+                } else if (f[0].equals("E") && reader.broken != null) {
+                    // 終端まで書かれた学期が読めないのは切れた書き込みではなく、ファイルの破損
+                    throw new IOException("学期ファイルを読み込めませんでした: " + file, reader.broken);
+                } else if (reader.students == null && reader.broken == null && !line.isEmpty()) {
+                    throw new IOException("学期ファイルの形式が正しくありません: " + file);
+                }
+            }
+        }
+        history.lastSaved = history.terms.isEmpty() ? null : history.terms.get(history.terms.size() - 1);
+        return history;
+    }
+
+    /** 1学期分の行を、直前に読み込んだ学期に当てて組み立てる */
+    private class TermReader {
+        String name;
+        LocalDateTime takenAt;
+        Map<String, Integer> days;
+        /** 組み立て中の学期の生徒（null なら学期の外） */
+        Map<String, FrozenStudent> students;
+        String id, studentName;
+        Map<String, FrozenRecord> records;
+        /** 組み立て中の学期で読めなかった行（終端がなければ学期ごと捨てる） */
+        RuntimeException broken;
+
+        void begin(String[] f) {
+            students = null;
+            broken = null;
+            id = null;
+            try {
+                name = Tsv.unescape(f[1]);
+                takenAt = LocalDateTime.parse(f[2]);
+            } catch (RuntimeException ex) {
+                broken = ex;
+                return;
+            }
+            days = new LinkedHashMap<>();
+            Term prev = terms.isEmpty() ? null : terms.get(terms.size() - 1);
+            students = prev != null ? new LinkedHashMap<>(prev.students()) : new LinkedHashMap<>();
+        }
+
+        void apply(String[] f) {
+            switch (f[0]) {
+                case "D" -> days.put(Tsv.unescape(f[1]), Integer.parseInt(f[2]));
+                case "S" -> {
+                    finishStudent();
+                    id = Tsv.unescape(f[1]);
+                    studentName = Tsv.unescape(f[2]);
+                    FrozenStudent before = students.get(id);
+                    records = before != null ? new LinkedHashMap<>(before.records()) : new LinkedHashMap<>();
+                }
+                case "R" -> {
+                    if (id == null) throw new IllegalStateException("生徒の行より前に記録があります");
+                    records.put(Tsv.unescape(f[1]), new FrozenRecord(Integer.parseInt(f[2]), Integer.parseInt(f[3]),
+                            f[4].isEmpty() ? null : Double.valueOf(f[4])));
+                }
+                case "-R" -> {
+                    if (id == null) throw new IllegalStateException("生徒の行より前に記録があります");
+                    records.remove(Tsv.unescape(f[1]));
+                }
+                case "-S" -> {
+                    finishStudent();
+                    students.remove(Tsv.unescape(f[1]));
+                }
+                case "E" -> {
+                    finishStudent();
+                    add(name, takenAt, days, students);
+                    students = null;
+                }
+                default -> throw new IllegalStateException("不明な行: " + f[0]);
+            }
+        }
+
+        private void finishStudent() {
+            if (id != null) students.put(id, new FrozenStudent(id, studentName, Collections.unmodifiableMap(records)));
+            id = null;
+        }
+    }
+
+    /** 読み込んだ学期を追加する（変わっていない生徒は差分の当て方から直前の学期と同じインスタンス） */
+    private void add(String name, LocalDateTime takenAt, Map<String, Integer> subjectTotalDays,
+                     Map<String, FrozenStudent> students) {
+        Term prev = terms.isEmpty() ? null : terms.get(terms.size() - 1);
+        Map<String, Integer> days = (prev != null && prev.subjectTotalDays().equals(subjectTotalDays))
+                ? prev.subjectTotalDays()
+                : Collections.unmodifiableMap(subjectTotalDays);
+        terms.add(new Term(name, takenAt, days, Collections.unmodifiableMap(students)));
+    }
+
+    /**
+     * 学期を、最後に保存した学期からの差分として保存先に追記する（保存先がなければ何もしない）。
+     * Term は不変なので、snapshot の後にバックグラウンドで呼んでよい（snapshot した順に呼ぶこと）
+     */
+    public synchronized void save(Term term) throws IOException {
+        if (file == null) return;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        Map<String, FrozenStudent> before = lastSaved != null ? lastSaved.students() : Map.of();
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            // 前回の書き込みが行の途中で切れていたら、その行に続けて書かないよう改行してから始める
+            if (!endsWithNewline(file)) out.write("\n");
+            out.write("T\t" + Tsv.escape(term.name()) + "\t" + term.takenAt() + "\n");
+            for (Map.Entry<String, Integer> e : term.subjectTotalDays().entrySet())
+                out.write("D\t" + Tsv.escape(e.getKey()) + "\t" + e.getValue() + "\n");
+            for (FrozenStudent fs : term.students().values()) {
+                FrozenStudent old = before.get(fs.studentId());
+                if (fs == old || fs.equals(old)) continue;
+                out.write("S\t" + Tsv.escape(fs.studentId()) + "\t" + Tsv.escape(fs.name()) + "\n");
+                for (Map.Entry<String, FrozenRecord> e : fs.records().entrySet()) {
+                    FrozenRecord r = e.getValue();
+                    if (old != null && r.equals(old.records().get(e.getKey()))) continue;
+                    out.write("R\t" + Tsv.escape(e.getKey()) + "\t" + r.totalDays() + "\t" + r.attendedDays()
+                            + "\t" + (r.testScore() != null ? r.testScore() : "") + "\n");
+                }
+                if (old != null) {
+                    for (String subject : old.records().keySet())
+                        if (!fs.records().containsKey(subject)) out.write("-R\t" + Tsv.escape(subject) + "\n");
+                }
+            }
+            for (String id : before.keySet())
+                if (!term.students().containsKey(id)) out.write("-S\t" + Tsv.escape(id) + "\n");
+            out.write("E\n");
+        }
+        lastSaved = term;
+    }
+
+    private static boolean endsWithNewline(Path file) throws IOException {
+        if (!Files.exists(file)) return true;
+        try (SeekableByteChannel ch = Files.newByteChannel(file, StandardOpenOption.READ)) {
+            if (ch.size() == 0) return true;
+            ByteBuffer last = ByteBuffer.allocate(1);
+            ch.position(ch.size() - 1).read(last);
+            return last.get(0) == '\n';
+        }
+    }
+
+    // ── スナップショット ────────────────────────────────────────
+
+    /**
+     * 現在の成績を凍結して学期として追加する。
+     * 直前の学期と同じ内容の部分はインスタンスを共有する。
+     */
+    public Term snapshot(String name, Collection<Student> students, Map<String, Integer> subjectTotalDays) {
+        Term prev = terms.isEmpty() ? null : terms.get(terms.size() - 1);
+
+        Map<String, Integer> days = (prev != null && prev.subjectTotalDays().equals(subjectTotalDays))
+                ? prev.subjectTotalDays()
+                : Collections.unmodifiableMap(new LinkedHashMap<>(subjectTotalDays));
+
+        Map<String, FrozenStudent> frozen = new LinkedHashMap<>(students.size() * 4 / 3 + 1);
+        for (Student st : students) {
+            FrozenStudent before = prev != null ? prev.students().get(st.getStudentId()) : null;
+            frozen.put(st.getStudentId(), freeze(st, before));
+        }
+
+        Term term = new Term(name, LocalDateTime.now(), days, Collections.unmodifiableMap(frozen));
+        terms.add(term);
+        return term;
+    }
+
+    private FrozenStudent freeze(Student st, FrozenStudent before) {
+        Map<String, Student.SubjectRecord> current = st.getSubjectMap();
+        boolean unchanged = before != null && before.name().equals(st.getName())
+                && before.records().size() == current.size();
+
+        Map<String, FrozenRecord> records = new LinkedHashMap<>(current.size() * 4 / 3 + 1);
+        for (Map.Entry<String, Student.SubjectRecord> e : current.entrySet()) {
+            FrozenRecord old = before != null ? before.records().get(e.getKey()) : null;
+            if (old != null && old.sameAs(e.getValue())) {
+                records.put(e.getKey(), old);
+            } else {
+                records.put(e.getKey(), FrozenRecord.of(e.getValue()));
+                unchanged = false;
+            }
+        }
+        if (unchanged) return before;
+        return new FrozenStudent(st.getStudentId(), st.getName(), Collections.unmodifiableMap(records));
+    }
+
+    // ── 参照 ────────────────────────────────────────────────
+
+    public List<Term> getTerms() { return Collections.unmodifiableList(terms); }
+
+    public boolean isEmpty() { return terms.isEmpty(); }
+
+    /** 1生徒・1科目の学期推移（その学期に記録がなければ含めない） */
+    public List<TermValue> historyOf(String studentId, String subject) {
+        List<TermValue> result = new ArrayList<>();
+        for (Term t : terms) {
+            FrozenStudent fs = t.students().get(studentId);
+            FrozenRecord r = fs != null ? fs.records().get(subject) : null;
+            if (r != null) result.add(new TermValue(t.name(), r));
+        }
+        return result;
+    }
+
+    /** 1生徒の学期ごとの総合平均（学期名 → 平均） */
+    public Map<String, Double> overallHistoryOf(String studentId) {
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (Term t : terms) {
+            FrozenStudent fs = t.students().get(studentId);
+            if (fs != null) result.put(t.name(), fs.overallAverage());
+        }
+        return result;
+    }
+}
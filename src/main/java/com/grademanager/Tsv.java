@@ -0,0 +1,30 @@
+package com.grademanager;
+
+/**
+ * タブ区切りのファイル（監査ログ・クラス一覧・学期スナップショット）の欄のエスケープ
+ *
+ * 欄の中のバックスラッシュ・タブ・改行を \\ \t \n に置き換え、1件が必ず1行に収まるようにする。
+ */
+final class Tsv {
+
+    private Tsv() {}
+
+    static String escape(String s) {
+        if (s == null) return "";
+        return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+
+    static String unescape(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                char n = s.charAt(++i);
+                sb.append(n == 't' ? '\t' : n == 'n' ? '\n' : n);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
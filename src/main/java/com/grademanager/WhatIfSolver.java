@@ -0,0 +1,109 @@
+package com.grademanager;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * 「あと何点取れば合格か」の逆算
+ *
+ * 総合点 = 出席点×0.5 + テスト点×0.5 を解いて、科目ごとに
+ *   - 各評価（可/良/優/秀）に届く最小テスト点 = 2×下限点 − 出席点
+ *   - 出席8割を保ったまま、あと何回欠席できるか
+ * を全生徒・全科目について1回の走査でまとめて求める。
+ *
+ * 値は科目ごとの配列（生徒の並び順）に入れる。生徒数が多いときは並列に計算する。
+ */
+public class WhatIfSolver {
+
+    /** 逆算する評価と下限点（Student.scoreToGrade と同じ閾値） */
+    public static final String[] BANDS      = {"可", "良", "優", "秀"};
+    public static final double[] THRESHOLDS = {60, 70, 80, 90};
+
+    /** これより多い生徒数なら並列に計算する */
+    private static final int PARALLEL_THRESHOLD = 10_000;
+
+    /** 計算結果（科目 × 評価 × 生徒） */
+    public static final class Result {
+        private final Map<Student, Integer> index;
+        private final Map<String, double[][]> minTest;
+        private final Map<String, int[]> absenceSlack;
+
+        private Result(Map<Student, Integer> index, Map<String, double[][]> minTest, Map<String, int[]> absenceSlack) {
+            this.index = index;
+            this.minTest = minTest;
+            this.absenceSlack = absenceSlack;
+        }
+
+        /**
+         * 評価 BANDS[band] に必要な最小テスト点。
+         * 0 なら何点でも到達、NaN なら出席不足か100点でも届かない、null なら記録なし。
+         */
+        public Double minTestScore(Student st, String subject, int band) {
+            Integer i = index.get(st);
+            double[][] m = minTest.get(subject);
+            if (i == null || m == null) return null;
+            double v = m[band][i];
+            return v == NO_RECORD ? null : v;
+        }
+
+        /** 出席8割を保ったまま欠席できる残り回数（負なら既に出席不足）、記録なしは null */
+        public Integer remainingAbsences(Student st, String subject) {
+            Integer i = index.get(st);
+            int[] a = absenceSlack.get(subject);
+            if (i == null || a == null || a[i] == Integer.MIN_VALUE) return null;
+            return a[i];
+        }
+    }
+
+    private static final double NO_RECORD = Double.NEGATIVE_INFINITY;
+
+    public static Result solve(List<Student> students, Map<String, Integer> subjectTotalDays) {
+        int n = students.size();
+        Map<Student, Integer> index = new IdentityHashMap<>(n);
+        for (int i = 0; i < n; i++) index.put(students.get(i), i);
+
+        Map<String, double[][]> minTest = new LinkedHashMap<>();
+        Map<String, int[]> slack = new LinkedHashMap<>();
+        for (String subject : subjectTotalDays.keySet()) {
+            double[][] m = new double[BANDS.length][n];
+            int[] a = new int[n];
+            IntStream range = IntStream.range(0, n);
+            if (n > PARALLEL_THRESHOLD) range = range.parallel();
+            range.forEach(i -> solveOne(students.get(i).getRecord(subject), m, a, i));
+            minTest.put(subject, m);
+            slack.put(subject, a);
+        }
+        return new Result(index, minTest, slack);
+    }
+
+    private static void solveOne(Student.SubjectRecord r, double[][] m, int[] slack, int i) {
+        if (r == null) {
+            for (double[] band : m) band[i] = NO_RECORD;
+            slack[i] = Integer.MIN_VALUE;
+            return;
+        }
+        slack[i] = r.attendedDays - minAttendedDays(r.totalDays);
+        boolean sufficient = r.hasSufficientAttendance();
+        double attPt = r.attendanceScore();
+        for (int b = 0; b < BANDS.length; b++) {
+            double need = 2 * THRESHOLDS[b] - attPt;
+            m[b][i] = !sufficient || need > 100 ? Double.NaN : Math.max(0, need);
+        }
+    }
+
+    /** 出席率 >= 80% になる最小出席日数（SubjectRecord と同じ判定式で確かめる） */
+    static int minAttendedDays(int totalDays) {
+        if (totalDays <= 0) return 0;
+        int d = (int) Math.ceil(totalDays * 0.8);
+        while (d > 0 && (double) (d - 1) / totalDays >= 0.8) d--;
+        while ((double) d / totalDays < 0.8) d++;
+        return d;
+    }
+
+    /** 表示用: 必要点を整数に切り上げ（届かない場合は「×」） */
+    public static String format(Double v) {
+        if (v == null) return "-";
+        if (v.isNaN()) return "×";
+        return String.valueOf((int) Math.ceil(v - 1e-9));
+    }
+}
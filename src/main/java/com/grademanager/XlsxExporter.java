@@ -0,0 +1,399 @@
+package com.grademanager;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * XLSX エクスポーター（ストリーミング書き出し）
+ *
+ * OOXML の zip を直接 1 行ずつ書き出すため、生徒数に関わらずメモリ使用量は一定。
+ *   - 見出しは画面の表と同じく「科目（全N回）」の下に 出席日数 / 出席率 / テスト / 総合 / 評価 をまとめる
+ *   - 秀/優/良/可/不可 の色分けはスタイル（styles.xml）で表現する
+ *   - 固定文言（見出し・評価）は共有文字列、氏名・学籍番号はインライン文字列で書く
+ *     （共有文字列表が生徒数に比例して膨らまないようにするため）
+ *   - Excel の1シート上限（1,048,576行）を超える名簿は「成績 (2)」以降のシートに続けて書く
+ */
+public class XlsxExporter {
+
+    /** 1科目あたりの列数（出席日数 / 出席率 / テスト / 総合 / 評価） */
+    private static final int COLS_PER_SUBJECT = 5;
+    private static final String[] SUB_HEADERS = {"出席日数", "出席率", "テスト", "総合", "評価"};
+    private static final String[] GRADES = {"秀", "優", "良", "可", "不可", "不可(出席)", "-"};
+    /** 評価帯の色（秀, 優, 良, 可, 不可）— 画面の gradeStyle と同じ */
+    private static final String[] BAND_COLORS = {"FF8E44AD", "FF27AE60", "FF2980B9", "FFF39C12", "FFE74C3C"};
+    /** Excel の1シートの最大行数 */
+    static final int MAX_SHEET_ROWS = 1_048_576;
+    /** 見出しの行数（各シートの先頭に繰り返す） */
+    private static final int HEADER_ROWS = 2;
+
+    // ── cellXfs のインデックス ──
+    private static final int XF_HEADER   = 1;
+    private static final int XF_MISSING  = 2;
+    private static final int XF_COMP     = 3;   // + 評価帯 (0〜4)
+    private static final int XF_TEST     = 8;   // + 評価帯
+    private static final int XF_GRADE    = 13;  // + 評価帯
+    private static final int XF_DAYS_OK  = 18;
+    private static final int XF_DAYS_NG  = 19;
+    private static final int XF_RATE_OK  = 20;
+    private static final int XF_RATE_NG  = 21;
+    private static final int XF_TEXT     = 22;
+
+    private final List<Student> students;
+    private final Map<String, Integer> subjectTotalDays;
+    private final Map<String, Integer> sharedIndex = new LinkedHashMap<>();
+    /** 1シートに書く生徒数 */
+    private final int studentsPerSheet;
+
+    /**
+     * 書き出し中も画面で編集できるよう、呼び出し側（FXスレッド）で生徒と科目記録を複製してから
+     * バックグラウンドで書き出す想定
+     */
+    public XlsxExporter(List<Student> students, Map<String, Integer> subjectTotalDays) {
+        this(students, subjectTotalDays, MAX_SHEET_ROWS);
+    }
+
+    /** sheetRows は見出しを含む1シートの行数（シートの切り替えを少人数で確かめる用） */
+    XlsxExporter(List<Student> students, Map<String, Integer> subjectTotalDays, int sheetRows) {
+        if (sheetRows <= HEADER_ROWS || sheetRows > MAX_SHEET_ROWS)
+            throw new IllegalArgumentException("1シートの行数が不正です: " + sheetRows);
+        this.students = new ArrayList<>(students.size());
+        for (Student s : students) this.students.add(s.copy());
+        this.subjectTotalDays = new LinkedHashMap<>(subjectTotalDays);
+        this.studentsPerSheet = sheetRows - HEADER_ROWS;
+    }
+
+    /** 書き出したデータ行数を返す */
+    public long export(File file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16)) {
+            return export(out);
+        }
+    }
+
+    public long export(OutputStream out) throws IOException {
+        buildSharedStrings();
+        ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        Writer w = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), 1 << 16);
+
+        // 生徒0人でも見出しだけのシートを1枚書く
+        int sheets = Math.max(1, (students.size() + studentsPerSheet - 1) / studentsPerSheet);
+        putEntry(zip, w, "[Content_Types].xml", contentTypes(sheets));
+        putEntry(zip, w, "_rels/.rels", ROOT_RELS);
+        putEntry(zip, w, "xl/workbook.xml", workbook(sheets));
+        putEntry(zip, w, "xl/_rels/workbook.xml.rels", workbookRels(sheets));
+        putEntry(zip, w, "xl/styles.xml", buildStyles());
+        putEntry(zip, w, "xl/sharedStrings.xml", buildSharedStringsXml());
+
+        long rows = 0;
+        for (int sheet = 1; sheet <= sheets; sheet++) {
+            int from = (sheet - 1) * studentsPerSheet;
+            int to = Math.min(students.size(), from + studentsPerSheet);
+            zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + sheet + ".xml"));
+            rows += writeSheet(w, students.subList(from, to));
+            w.flush();
+            zip.closeEntry();
+        }
+
+        zip.finish();
+        zip.flush();
+        return rows;
+    }
+
+    // ═══════════════════════ Sheet ═══════════════════════
+
+    private long writeSheet(Writer w, List<Student> rows) throws IOException {
+        int lastCol = 2 + subjectTotalDays.size() * COLS_PER_SUBJECT + 2;
+
+        w.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+        w.write("<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">");
+        // 見出し2行 + 学籍番号・氏名を固定
+        w.write("<sheetViews><sheetView workbookViewId=\"0\">"
+              + "<pane xSplit=\"2\" ySplit=\"2\" topLeftCell=\"C3\" activePane=\"bottomRight\" state=\"frozen\"/>"
+              + "</sheetView></sheetViews>");
+        w.write("<cols>");
+        writeCol(w, 1, 1, 11);
+        writeCol(w, 2, 2, 14);
+        if (!subjectTotalDays.isEmpty()) writeCol(w, 3, lastCol - 2, 9);
+        writeCol(w, lastCol - 1, lastCol, 10);
+        w.write("</cols><sheetData>");
+
+        // 見出し1行目: 学籍番号 / 氏名 / 科目（全N回）... / 総合平均 / 評価
+        w.write("<row r=\"1\">");
+        sharedCell(w, 1, 1, "学籍番号", XF_HEADER);
+        sharedCell(w, 2, 1, "氏名", XF_HEADER);
+        int col = 3;
+        for (Map.Entry<String, Integer> e : subjectTotalDays.entrySet()) {
+            sharedCell(w, col, 1, groupHeader(e.getKey(), e.getValue()), XF_HEADER);
+            for (int i = 1; i < COLS_PER_SUBJECT; i++) styledEmpty(w, col + i, 1, XF_HEADER);
+            col += COLS_PER_SUBJECT;
+        }
+        sharedCell(w, col,     1, "総合平均", XF_HEADER);
+        sharedCell(w, col + 1, 1, "評価",     XF_HEADER);
+        w.write("</row>");
+
+        // 見出し2行目: 科目ごとの小見出し
+        w.write("<row r=\"2\">");
+        styledEmpty(w, 1, 2, XF_HEADER);
+        styledEmpty(w, 2, 2, XF_HEADER);
+        col = 3;
+        for (int s = 0; s < subjectTotalDays.size(); s++) {
+            for (String h : SUB_HEADERS) sharedCell(w, col++, 2, h, XF_HEADER);
+        }
+        styledEmpty(w, col,     2, XF_HEADER);
+        styledEmpty(w, col + 1, 2, XF_HEADER);
+        w.write("</row>");
+
+        // データ行
+        int r = HEADER_ROWS + 1;
+        for (Student st : rows) {
+            w.write("<row r=\"" + r + "\">");
+            inlineCell(w, 1, r, st.getStudentId(), XF_TEXT);
+            inlineCell(w, 2, r, st.getName(), XF_TEXT);
+            col = 3;
+            for (String subject : subjectTotalDays.keySet()) {
+                writeSubjectCells(w, col, r, st.getRecord(subject));
+                col += COLS_PER_SUBJECT;
+            }
+            double avg = st.getOverallAverage();
+            numberCell(w, col, r, round1(avg), XF_COMP + scoreBand(avg));
+            String overall = st.getOverallGradeLabel();
+            sharedCell(w, col + 1, r, overall, XF_GRADE + gradeBand(overall));
+            w.write("</row>");
+            r++;
+        }
+        w.write("</sheetData>");
+
+        // 見出しの結合
+        w.write("<mergeCells>");
+        w.write("<mergeCell ref=\"A1:A2\"/><mergeCell ref=\"B1:B2\"/>");
+        col = 3;
+        for (int s = 0; s < subjectTotalDays.size(); s++) {
+            w.write("<mergeCell ref=\"" + ref(col, 1) + ":" + ref(col + COLS_PER_SUBJECT - 1, 1) + "\"/>");
+            col += COLS_PER_SUBJECT;
+        }
+        w.write("<mergeCell ref=\"" + ref(col, 1) + ":" + ref(col, 2) + "\"/>");
+        w.write("<mergeCell ref=\"" + ref(col + 1, 1) + ":" + ref(col + 1, 2) + "\"/>");
+        w.write("</mergeCells>");
+        w.write("</worksheet>");
+        return rows.size();
+    }
+
+    /** 画面の buildSubjectGroup と同じ5列を書く */
+    private void writeSubjectCells(Writer w, int col, int r, Student.SubjectRecord rec) throws IOException {
+        if (rec == null) {
+            for (int i = 0; i < COLS_PER_SUBJECT; i++) sharedCell(w, col + i, r, "-", XF_MISSING);
+            return;
+        }
+        boolean ok = rec.hasSufficientAttendance();
+        inlineCell(w, col, r, rec.attendedDays + "/" + rec.totalDays, ok ? XF_DAYS_OK : XF_DAYS_NG);
+        numberCell(w, col + 1, r, rec.attendanceRate(), ok ? XF_RATE_OK : XF_RATE_NG);
+        if (rec.testScore != null) numberCell(w, col + 2, r, rec.testScore, XF_TEST + scoreBand(rec.testScore));
+        else sharedCell(w, col + 2, r, "-", XF_MISSING);
+        Double comp = rec.compositeScore();
+        if (comp != null) numberCell(w, col + 3, r, round1(comp), XF_COMP + scoreBand(comp));
+        else sharedCell(w, col + 3, r, "-", XF_MISSING);
+        String g = rec.gradeLabel();
+        sharedCell(w, col + 4, r, g, g.equals("-") ? XF_MISSING : XF_GRADE + gradeBand(g));
+    }
+
+    // ═══════════════════════ Cell Writers ═══════════════════════
+
+    private void sharedCell(Writer w, int col, int row, String text, int style) throws IOException {
+        w.write("<c r=\"" + ref(col, row) + "\" s=\"" + style + "\" t=\"s\"><v>" + sharedIndex.get(text) + "</v></c>");
+    }
+
+    private void inlineCell(Writer w, int col, int row, String text, int style) throws IOException {
+        w.write("<c r=\"" + ref(col, row) + "\" s=\"" + style + "\" t=\"inlineStr\"><is><t>");
+        w.write(escape(text));
+        w.write("</t></is></c>");
+    }
+
+    private void numberCell(Writer w, int col, int row, double v, int style) throws IOException {
+        w.write("<c r=\"" + ref(col, row) + "\" s=\"" + style + "\"><v>" + v + "</v></c>");
+    }
+
+    private void styledEmpty(Writer w, int col, int row, int style) throws IOException {
+        w.write("<c r=\"" + ref(col, row) + "\" s=\"" + style + "\"/>");
+    }
+
+    private void writeCol(Writer w, int min, int max, double width) throws IOException {
+        w.write("<col min=\"" + min + "\" max=\"" + max + "\" width=\"" + width + "\" customWidth=\"1\"/>");
+    }
+
+    // ═══════════════════════ Shared Strings / Styles ═══════════════════════
+
+    private void buildSharedStrings() {
+        sharedIndex.clear();
+        for (String s : new String[]{"学籍番号", "氏名", "総合平均", "評価"}) addShared(s);
+        for (String s : SUB_HEADERS) addShared(s);
+        for (String s : GRADES) addShared(s);
+        subjectTotalDays.forEach((s, d) -> addShared(groupHeader(s, d)));
+    }
+
+    private void addShared(String s) {
+        sharedIndex.putIfAbsent(s, sharedIndex.size());
+    }
+
+    private String buildSharedStringsXml() {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+        sb.append("<sst xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" uniqueCount=\"")
+          .append(sharedIndex.size()).append("\">");
+        for (String s : sharedIndex.keySet()) sb.append("<si><t>").append(escape(s)).append("</t></si>");
+        return sb.append("</sst>").toString();
+    }
+
+    private String buildStyles() {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+        sb.append("<styleSheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">");
+        sb.append("<numFmts count=\"1\"><numFmt numFmtId=\"164\" formatCode=\"0.0\"/></numFmts>");
+
+        // fonts: 0 標準 / 1 見出し(白太字) / 2 灰色 / 3〜7 評価帯色 / 8〜12 評価帯色太字
+        sb.append("<fonts count=\"13\">");
+        sb.append("<font><sz val=\"11\"/><name val=\"Calibri\"/></font>");
+        sb.append("<font><b/><sz val=\"11\"/><color rgb=\"FFFFFFFF\"/><name val=\"Calibri\"/></font>");
+        sb.append("<font><sz val=\"11\"/><color rgb=\"FFBDC3C7\"/><name val=\"Calibri\"/></font>");
+        for (String c : BAND_COLORS) sb.append("<font><sz val=\"11\"/><color rgb=\"").append(c).append("\"/><name val=\"Calibri\"/></font>");
+        for (String c : BAND_COLORS) sb.append("<font><b/><sz val=\"11\"/><color rgb=\"").append(c).append("\"/><name val=\"Calibri\"/></font>");
+        sb.append("</fonts>");
+
+        sb.append("<fills count=\"3\"><fill><patternFill patternType=\"none\"/></fill>")
+          .append("<fill><patternFill patternType=\"gray125\"/></fill>")
+          .append("<fill><patternFill patternType=\"solid\"><fgColor rgb=\"FF2C3E50\"/><bgColor indexed=\"64\"/></patternFill></fill></fills>");
+        sb.append("<borders count=\"2\"><border><left/><right/><top/><bottom/><diagonal/></border>")
+          .append("<border><left style=\"thin\"><color rgb=\"FFDCE1E7\"/></left><right style=\"thin\"><color rgb=\"FFDCE1E7\"/></right>")
+          .append("<top style=\"thin\"><color rgb=\"FFDCE1E7\"/></top><bottom style=\"thin\"><color rgb=\"FFDCE1E7\"/></bottom><diagonal/></border></borders>");
+        sb.append("<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>");
+
+        sb.append("<cellXfs count=\"23\">");
+        sb.append("<xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>");               // 0
+        xf(sb, 0, 1, 2);                                                                                   // 1 見出し
+        xf(sb, 0, 2, 0);                                                                                   // 2 未入力
+        for (int b = 0; b < 5; b++) xf(sb, 164, 8 + b, 0);                                                 // 3〜7 総合点
+        for (int b = 0; b < 5; b++) xf(sb, 1, 3 + b, 0);                                                   // 8〜12 テスト点
+        for (int b = 0; b < 5; b++) xf(sb, 0, 8 + b, 0);                                                   // 13〜17 評価
+        xf(sb, 0, 9, 0);                                                                                   // 18 出席日数 OK
+        xf(sb, 0, 12, 0);                                                                                  // 19 出席日数 不足
+        xf(sb, 9, 4, 0);                                                                                   // 20 出席率 OK
+        xf(sb, 9, 12, 0);                                                                                  // 21 出席率 不足
+        sb.append("<xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"1\" xfId=\"0\" applyBorder=\"1\"/>"); // 22 文字列
+        sb.append("</cellXfs>");
+        sb.append("<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>");
+        return sb.append("</styleSheet>").toString();
+    }
+
+    private void xf(StringBuilder sb, int numFmt, int font, int fill) {
+        sb.append("<xf numFmtId=\"").append(numFmt).append("\" fontId=\"").append(font)
+          .append("\" fillId=\"").append(fill).append("\" borderId=\"1\" xfId=\"0\"")
+          .append(" applyNumberFormat=\"1\" applyFont=\"1\" applyFill=\"1\" applyBorder=\"1\" applyAlignment=\"1\">")
+          .append("<alignment horizontal=\"center\" vertical=\"center\"/></xf>");
+    }
+
+    // ═══════════════════════ Helpers ═══════════════════════
+
+    private static void putEntry(ZipOutputStream zip, Writer w, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        w.write(content);
+        w.flush();
+        zip.closeEntry();
+    }
+
+    private static String groupHeader(String subject, int totalDays) {
+        return subject + "（全" + totalDays + "回）";
+    }
+
+    /** 画面の scoreCellFactory と同じ閾値 */
+    private static int scoreBand(double v) {
+        return v >= 90 ? 0 : v >= 80 ? 1 : v >= 70 ? 2 : v >= 60 ? 3 : 4;
+    }
+
+    private static int gradeBand(String g) {
+        return switch (g) {
+            case "秀" -> 0;
+            case "優" -> 1;
+            case "良" -> 2;
+            case "可" -> 3;
+            default   -> 4; // 不可・不可(出席)
+        };
+    }
+
+    private static double round1(double v) { return Math.round(v * 10.0) / 10.0; }
+
+    /** 列番号(1始まり)・行番号 → "A1" 形式 */
+    private static String ref(int col, int row) {
+        StringBuilder sb = new StringBuilder();
+        for (int c = col; c > 0; c = (c - 1) / 26) sb.insert(0, (char) ('A' + (c - 1) % 26));
+        return sb.append(row).toString();
+    }
+
+    private static String escape(String s) {
+        if (s == null) return "";
+        StringBuilder sb = null;
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            String rep = switch (ch) {
+                case '&' -> "&amp;";
+                case '<' -> "&lt;";
+                case '>' -> "&gt;";
+                case '"' -> "&quot;";
+                default  -> (ch < 0x20 && ch != '\t' && ch != '\n' && ch != '\r') ? "" : null;
+            };
+            if (rep != null && sb == null) sb = new StringBuilder(s.length() + 16).append(s, 0, i);
+            if (sb != null) { if (rep != null) sb.append(rep); else sb.append(ch); }
+        }
+        return sb != null ? sb.toString() : s;
+    }
+
+    // ═══════════════════════ Package Parts ═══════════════════════
+
+    private static String contentTypes(int sheets) {
+        StringBuilder sb = new StringBuilder(
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n" +
+            "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">" +
+            "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>" +
+            "<Default Extension=\"xml\" ContentType=\"application/xml\"/>" +
+            "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>");
+        for (int i = 1; i <= sheets; i++)
+            sb.append("<Override PartName=\"/xl/worksheets/sheet").append(i)
+              .append(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+        return sb.append(
+            "<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>" +
+            "<Override PartName=\"/xl/sharedStrings.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sharedStrings+xml\"/>" +
+            "</Types>").toString();
+    }
+
+    private static final String ROOT_RELS =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n" +
+        "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">" +
+        "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"xl/workbook.xml\"/>" +
+        "</Relationships>";
+
+    /** シート名は「成績」「成績 (2)」… */
+    private static String workbook(int sheets) {
+        StringBuilder sb = new StringBuilder(
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n" +
+            "<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" " +
+            "xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\"><sheets>");
+        for (int i = 1; i <= sheets; i++)
+            sb.append("<sheet name=\"成績").append(i == 1 ? "" : " (" + i + ")")
+              .append("\" sheetId=\"").append(i).append("\" r:id=\"rId").append(i).append("\"/>");
+        return sb.append("</sheets></workbook>").toString();
+    }
+
+    /** rId1〜N がシート、続く2つがスタイルと共有文字列 */
+    private static String workbookRels(int sheets) {
+        StringBuilder sb = new StringBuilder(
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n" +
+            "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">");
+        for (int i = 1; i <= sheets; i++)
+            sb.append("<Relationship Id=\"rId").append(i)
+              .append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet")
+              .append(i).append(".xml\"/>");
+        sb.append("<Relationship Id=\"rId").append(sheets + 1)
+          .append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles\" Target=\"styles.xml\"/>");
+        sb.append("<Relationship Id=\"rId").append(sheets + 2)
+          .append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/sharedStrings\" Target=\"sharedStrings.xml\"/>");
+        return sb.append("</Relationships>").toString();
+    }
+}
@@ -1,6 +1,10 @@
 module com.grademanager {
     requires javafx.controls;
     requires javafx.fxml;
+    requires java.management;
+    requires jdk.jfr;
+    requires java.sql;
+    requires com.h2database;
     opens com.grademanager to javafx.fxml;
     exports com.grademanager;
 }
@@ -0,0 +1,80 @@
+package com.grademanager;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditLogTest {
+
+    @TempDir Path dir;
+
+    private static void setScore(AuditLog log, Student st, double score) {
+        Map<String, Student.SubjectRecord> before = new HashMap<>();
+        st.getSubjectMap().forEach((subject, rec) -> before.put(subject, rec.copy()));
+        st.getOrCreateRecord("数学", 20).testScore = score;
+        log.recordChanges(st, before);
+    }
+
+    private static List<String> scores(AuditLog log, String studentId) throws IOException {
+        return log.historyOf(studentId).stream()
+                .filter(e -> e.field().equals("testScore")).map(AuditLog.Entry::newValue).toList();
+    }
+
+    @Test
+    void historyFollowsTheChainAcrossTheIndexAndTheRescannedTail() throws IOException {
+        Student a = new Student("S001", "山田\t太郎");
+        Student b = new Student("S002", "鈴木 花子");
+        a.getOrCreateRecord("数学", 20);
+        b.getOrCreateRecord("数学", 20);
+
+        // 1回目: 閉じるときに索引を書き出す
+        AuditLog first = new AuditLog(dir);
+        first.studentAdded(a);
+        first.studentAdded(b);
+        setScore(first, a, 60);
+        first.close();
+
+        // 2回目: 書き込んだが索引を書き出す前に終了し、最後の行も書きかけで止まった状態を写し取る
+        AuditLog second = new AuditLog(dir);
+        setScore(second, a, 70);
+        setScore(second, b, 80);
+        second.flush();
+        Path crashed = dir.resolve("crashed");
+        Files.createDirectories(crashed);
+        Files.copy(dir.resolve("audit.log"), crashed.resolve("audit.log"));
+        Files.copy(dir.resolve("audit.idx"), crashed.resolve("audit.idx"));
+        second.close();
+        Files.writeString(crashed.resolve("audit.log"), "2026-10-18T09:00:00\tx\tRECORD_UPDATE\tS001\t数",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        // 3回目: 索引以降の末尾を読み直し、書きかけの行は切り詰めてから追記する
+        AuditLog third = new AuditLog(crashed);
+        try {
+            assertEquals(List.of("60", "70"), scores(third, "S001"));
+            assertEquals(List.of("80"), scores(third, "S002"));
+            setScore(third, a, 90);
+            assertEquals(List.of("60", "70", "90"), scores(third, "S001"));
+            List<AuditLog.Entry> history = third.historyOf("S001");
+            assertEquals(AuditLog.STUDENT_ADD, history.get(0).action());
+            assertEquals("山田\t太郎", history.get(0).newValue());
+        } finally {
+            third.close();
+        }
+        for (String line : Files.readAllLines(crashed.resolve("audit.log"), StandardCharsets.UTF_8))
+            assertEquals(9, line.split("\t", -1).length, line);
+
+        // 閉じたときの索引から読んでも同じ
+        AuditLog reopened = new AuditLog(crashed);
+        try {
+            assertEquals(List.of("60", "70", "90"), scores(reopened, "S001"));
+        } finally {
+            reopened.close();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.grademanager;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeFeedTest {
+
+    /** 最初の Batch を受け取ったきり request しない購読者 */
+    private static final class StuckSubscriber implements Flow.Subscriber<ChangeFeed.Batch> {
+        final CountDownLatch first = new CountDownLatch(1);
+        @Override public void onSubscribe(Flow.Subscription s) { s.request(1); }
+        @Override public void onNext(ChangeFeed.Batch item) { first.countDown(); }
+        @Override public void onError(Throwable t) {}
+        @Override public void onComplete() {}
+    }
+
+    /** 受け取ったイベントをすべて溜める購読者 */
+    private static final class Collector implements Flow.Subscriber<ChangeFeed.Batch> {
+        final List<ChangeEvent> events = new CopyOnWriteArrayList<>();
+        final CountDownLatch completed = new CountDownLatch(1);
+        @Override public void onSubscribe(Flow.Subscription s) { s.request(Long.MAX_VALUE); }
+        @Override public void onNext(ChangeFeed.Batch item) { events.addAll(item.events()); }
+        @Override public void onError(Throwable t) { completed.countDown(); }
+        @Override public void onComplete() { completed.countDown(); }
+    }
+
+    @Test
+    void bulkRecordChangesAndRosterLoadsAreEmitted() throws Exception {
+        ChangeFeed feed = new ChangeFeed();
+        Collector collector = new Collector();
+        feed.subscribe(collector);
+
+        Student st = new Student("S001", "山田 太郎");
+        Student.SubjectRecord r = st.getOrCreateRecord("数学", 20);
+        r.attendedDays = 16;
+        r.testScore = 70.0;
+        List<Student> roster = List.of(st);
+
+        var before = feed.captureRecords(roster);
+        r.totalDays = 25;    // 16/25 で出席8割を下回る
+        feed.recordChanges(roster, before);
+        feed.rosterLoaded("クラス 1組", 1);
+        feed.close();
+        assertTrue(collector.completed.await(5, TimeUnit.SECONDS));
+
+        assertTrue(collector.events.stream().anyMatch(e ->
+                e instanceof ChangeEvent.AttendanceChanged a && a.totalDays() == 25 && a.crossedBelowCut()));
+        assertTrue(collector.events.stream().anyMatch(e ->
+                e instanceof ChangeEvent.GradeChanged g && g.newGrade().equals("不可(出席)")));
+        assertTrue(collector.events.stream().anyMatch(e ->
+                e instanceof ChangeEvent.RosterLoaded l && l.source().equals("クラス 1組") && l.students() == 1));
+    }
+
+    @Test
+    void closeReturnsWhileASubscriberStopsReading() throws Exception {
+        ChangeFeed feed = new ChangeFeed();
+        StuckSubscriber stuck = new StuckSubscriber();
+        feed.subscribe(stuck);
+        Student st = new Student("S001", "山田 太郎");
+        feed.studentAdded(st);
+        assertTrue(stuck.first.await(5, TimeUnit.SECONDS));
+        // 購読者のバッファ（64 Batch）を超えて配らせ、配信スレッドを待たせる
+        for (int i = 0; i < 200; i++) {
+            feed.studentAdded(st);
+            Thread.sleep(1);
+        }
+        assertTimeoutPreemptively(Duration.ofSeconds(10), feed::close);
+        // 配信スレッドは待ちを打ち切って終わっている（止まったまま残らない）
+        assertTrue(Thread.getAllStackTraces().keySet().stream()
+                .noneMatch(t -> t.getName().equals("change-feed-dispatcher") && t.isAlive()));
+    }
+
+    @Test
+    void slowSocketClientIsDisconnectedWithoutBlockingOthers() throws Exception {
+        ChangeFeed feed = new ChangeFeed();
+        ChangeFeed.SocketSink sink = new ChangeFeed.SocketSink(0);
+        feed.subscribe(sink);
+        try (Socket slow = new Socket(InetAddress.getLoopbackAddress(), sink.getPort());
+             Socket reader = new Socket(InetAddress.getLoopbackAddress(), sink.getPort())) {
+            slow.setReceiveBufferSize(1024);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (sink.getClientCount() < 2 && System.nanoTime() < deadline) Thread.sleep(10);
+            assertEquals(2, sink.getClientCount());
+
+            // reader だけが読み続ける
+            ExecutorService pool = Executors.newSingleThreadExecutor();
+            Future<Long> read = pool.submit(() -> {
+                long n = 0;
+                byte[] buf = new byte[8192];
+                InputStream in = reader.getInputStream();
+                for (int k; (k = in.read(buf)) > 0; ) n += k;
+                return n;
+            });
+
+            // 1件 1KB 近い行を大量に送り、slow の送信行列とソケットのバッファを埋める
+            Student st = new Student("S001", "山".repeat(300));
+            assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+                for (int i = 0; i < 20_000 && sink.getClientCount() > 1; i++) {
+                    feed.studentAdded(st);
+                    if (i % 100 == 0) Thread.sleep(1);
+                }
+                while (sink.getClientCount() > 1) Thread.sleep(10);
+            });
+            assertEquals(1, sink.getClientCount());
+
+            feed.close();
+            assertTrue(read.get(10, TimeUnit.SECONDS) > 0);
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.grademanager;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClassWorkspaceTest {
+
+    @TempDir Path dir;
+
+    private static final Map<String, Integer> SUBJECTS = Map.of("数学", 20);
+
+    private static List<Student> roster(String prefix, int n) {
+        List<Student> list = new ArrayList<>();
+        for (int i = 1; i <= n; i++) {
+            Student st = new Student(prefix + i, "生徒" + i);
+            st.getOrCreateRecord("数学", 20).attendedDays = 10 + i;
+            list.add(st);
+        }
+        return list;
+    }
+
+    @Test
+    void evictedEditsAreWrittenBackAndReloaded() throws Exception {
+        try (ClassWorkspace ws = new ClassWorkspace(dir, 1)) {
+            ws.create("1組", roster("A", 3), SUBJECTS);
+            List<Student> edited = roster("A", 4);
+            ws.update("1組", edited, SUBJECTS);
+            edited.get(0).getRecord("数学").attendedDays = 0;  // 反映後の画面側の編集は書き戻しに混ざらない
+            ws.create("2組", roster("B", 2), SUBJECTS);    // 1組が手放される
+            assertFalse(ws.isResident("1組"));
+        }
+        try (ClassWorkspace ws = new ClassWorkspace(dir, 1)) {
+            List<Student> reloaded = ws.open("1組").getStudents();
+            assertEquals(4, reloaded.size());
+            assertEquals(11, reloaded.get(0).getRecord("数学").attendedDays);
+            assertEquals(2, ws.open("2組").getStudents().size());
+        }
+    }
+
+    @Test
+    void summariesStayReadableWhileAClassLoads() throws Exception {
+        try (ClassWorkspace ws = new ClassWorkspace(dir, 1)) {
+            ws.create("1組", roster("A", 5_000), SUBJECTS);
+            ws.create("2組", roster("B", 1), SUBJECTS);     // 1組はファイルにだけある
+
+            ExecutorService pool = Executors.newSingleThreadExecutor();
+            try {
+                Future<ClassWorkspace.Gradebook> opening = pool.submit(() -> ws.open("1組"));
+                // 読み込み中もロックを待たずに一覧・集計を参照できる
+                while (!opening.isDone()) {
+                    assertTimeoutPreemptively(Duration.ofMillis(500), ws::total);
+                    assertEquals(2, ws.classNames().size());
+                }
+                assertEquals(5_000, opening.get().getStudents().size());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.grademanager;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarExporterTest {
+
+    @TempDir Path dir;
+
+    @Test
+    void roundTripsRowsAndGradeCounts() throws IOException {
+        SampleDataGenerator g = new SampleDataGenerator(5, 5_000, 5);
+        File file = dir.resolve("grades.gmc").toFile();
+        g.writeTo(file);
+
+        Map<String, Map<String, Long>> expected = new LinkedHashMap<>();
+        long records = 0;
+        for (Student st : g) {
+            for (Map.Entry<String, Student.SubjectRecord> e : st.getSubjectMap().entrySet()) {
+                expected.computeIfAbsent(e.getKey(), k -> new LinkedHashMap<>())
+                        .merge(e.getValue().gradeLabel(), 1L, Long::sum);
+                records++;
+            }
+        }
+
+        try (ColumnarExporter.Reader r = new ColumnarExporter.Reader(file)) {
+            assertEquals(records, r.forEach(row -> {}));
+        }
+        try (ColumnarExporter.Reader r = new ColumnarExporter.Reader(file)) {
+            Map<String, Map<String, Long>> actual = r.gradeCountsBySubject();
+            expected.forEach((subject, counts) -> assertEquals(new TreeMap<>(counts), new TreeMap<>(actual.get(subject))));
+        }
+    }
+
+    @Test
+    void rejectsTruncatedFileInsteadOfHanging() throws IOException {
+        SampleDataGenerator g = new SampleDataGenerator(6, 10_000, 4);
+        File file = dir.resolve("full.gmc").toFile();
+        g.writeTo(file);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+
+        // 行グループの途中（フッターより前）で切ったファイルはすべて IOException になること
+        for (int i = 1; i <= 9; i++) {
+            Path cut = dir.resolve("cut" + i + ".gmc");
+            Files.write(cut, Arrays.copyOf(bytes, bytes.length * i / 10));
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () ->
+                assertThrows(IOException.class, () -> {
+                    try (ColumnarExporter.Reader r = new ColumnarExporter.Reader(cut.toFile())) {
+                        r.forEach(row -> {});
+                    }
+                }));
+        }
+    }
+
+    @Test
+    void inflateRejectsTruncatedColumn() {
+        byte[] raw = new byte[50_000];
+        new Random(1).nextBytes(raw);
+        Deflater d = new Deflater();
+        d.setInput(raw);
+        d.finish();
+        byte[] packed = new byte[raw.length + 1024];
+        int len = d.deflate(packed);
+        d.end();
+
+        byte[] truncated = Arrays.copyOf(packed, len / 2);
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () ->
+            assertThrows(IOException.class, () -> ColumnarExporter.inflate(truncated, raw.length)));
+    }
+}
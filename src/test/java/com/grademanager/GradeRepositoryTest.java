@@ -0,0 +1,74 @@
+package com.grademanager;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GradeRepositoryTest {
+
+    @TempDir Path dir;
+
+    private static List<Student> roster(String... ids) {
+        List<Student> list = new ArrayList<>();
+        for (String id : ids) {
+            Student st = new Student(id, "生徒" + id);
+            st.getOrCreateRecord("数学", 20).attendedDays = 18;
+            list.add(st);
+        }
+        return list;
+    }
+
+    @Test
+    void rejectsEmptyAndDuplicateIdsWithoutWriting() throws SQLException {
+        try (GradeRepository repo = new GradeRepository(dir.resolve("g").toFile())) {
+            assertThrows(SQLException.class, () -> repo.saveStudents(roster("S001", "S002", "S001")));
+            assertThrows(SQLException.class, () -> repo.saveStudents(roster("S001", " ")));
+            assertEquals(0, repo.countStudents());
+        }
+    }
+
+    @Test
+    void newStudentOnPageCannotOverwriteAnotherPage() throws SQLException {
+        try (GradeRepository repo = new GradeRepository(dir.resolve("g").toFile())) {
+            repo.saveStudents(roster("S001", "S002", "S003", "S004"));
+
+            // 1ページ目（S001, S002）に、3ページ目の生徒と同じ学籍番号で追加した
+            List<Student> page = repo.loadPage(0, 2);
+            Set<String> loaded = Set.of("S001", "S002");
+            page.add(new Student("S004", "別人"));
+            assertThrows(SQLException.class, () -> repo.savePage(page, loaded));
+            assertEquals("生徒S004", repo.loadPage(3, 1).get(0).getName());
+
+            // 使われていない学籍番号なら追加される
+            page.set(2, new Student("S005", "新入生"));
+            repo.savePage(page, loaded);
+            assertEquals(5, repo.countStudents());
+        }
+    }
+
+    @Test
+    void countsGradesPerSubjectFromSavedRecords() throws SQLException {
+        try (GradeRepository repo = new GradeRepository(dir.resolve("g").toFile())) {
+            List<Student> students = roster("S001", "S002", "S003");
+            students.get(0).getRecord("数学").testScore = 100.0;    // 総合95 → 秀
+            students.get(1).getRecord("数学").testScore = 100.0;
+            students.get(2).getRecord("数学").attendedDays = 10;    // 出席5割 → 不可(出席)
+            students.get(2).getOrCreateRecord("英語", 15);          // テスト未入力 → -
+            repo.saveStudents(students);
+
+            assertEquals(Map.of("秀", 2L, "不可(出席)", 1L), repo.countByGrade("数学"));
+            assertEquals(Map.of("不可(出席)", 1L), repo.countByGrade("英語"));
+            assertEquals(Map.of(), repo.countByGrade("理科"));
+
+            // 保存し直すと数え直される
+            students.get(0).getRecord("数学").testScore = 40.0;     // 総合67 → 可
+            repo.saveStudents(students.subList(0, 1));
+            assertEquals(Map.of("秀", 1L, "可", 1L, "不可(出席)", 1L), repo.countByGrade("数学"));
+        }
+    }
+}
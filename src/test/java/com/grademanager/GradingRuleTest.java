@@ -0,0 +1,42 @@
+package com.grademanager;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GradingRuleTest {
+
+    private static Student.SubjectRecord record(int total, int attended, double test) {
+        Student.SubjectRecord r = new Student.SubjectRecord(total);
+        r.attendedDays = attended;
+        r.testScore = test;
+        return r;
+    }
+
+    @Test
+    void passScoreAboveUpperBandsFailsBeforeBanding() {
+        // 出席100%・テスト50点 → 総合75点。合格点80なら「良」ではなく不可
+        Student.SubjectRecord r = record(20, 20, 50);
+        assertEquals(75.0, r.compositeScore(), 1e-9);
+        assertEquals("不可", new GradingRule(0.8, 80).grade(r));
+        assertEquals("良", GradingRule.CURRENT.grade(r));
+    }
+
+    @Test
+    void currentRuleMatchesGradeLabel() {
+        SampleDataGenerator g = new SampleDataGenerator(11, 2_000, 6);
+        for (Student st : g) {
+            for (Student.SubjectRecord r : st.getSubjectMap().values())
+                assertEquals(r.gradeLabel(), GradingRule.CURRENT.grade(r));
+        }
+    }
+
+    @Test
+    void generatedTestScoresAreWholePoints() {
+        SampleDataGenerator g = new SampleDataGenerator(11, 2_000, 6);
+        for (Student st : g) {
+            for (Student.SubjectRecord r : st.getSubjectMap().values())
+                if (r.testScore != null) assertEquals(Math.rint(r.testScore), r.testScore, 0.0);
+        }
+    }
+}
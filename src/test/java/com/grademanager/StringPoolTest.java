@@ -0,0 +1,37 @@
+package com.grademanager;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringPoolTest {
+
+    @Test
+    void readsWhileInterningSeeCompleteStrings() throws Exception {
+        for (boolean offHeap : new boolean[] { false, true }) {
+            StringPool pool = new StringPool(offHeap);
+            int first = pool.intern("山田 太郎");
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            // 登録でアリーナ・ハッシュ表が何度も作り直される間も、登録済みのハンドルはロックなしで読める
+            Thread reader = new Thread(() -> {
+                try {
+                    while (pool.size() < 50_000) {
+                        assertEquals("山田 太郎", pool.get(first));
+                        int last = pool.size() - 1;
+                        if (last > 0) assertEquals("生徒" + last, pool.get(last));
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            });
+            reader.start();
+            for (int i = 1; i < 50_000; i++) assertEquals(i, pool.intern("生徒" + i));
+            reader.join();
+            if (failure.get() != null) fail(failure.get());
+            assertEquals(first, pool.intern("山田 太郎"));
+            assertThrows(IllegalArgumentException.class, () -> pool.get(50_000));
+        }
+    }
+}
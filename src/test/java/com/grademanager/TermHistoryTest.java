@@ -0,0 +1,133 @@
+package com.grademanager;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TermHistoryTest {
+
+    @TempDir Path dir;
+
+    private static final Map<String, Integer> SUBJECTS = new LinkedHashMap<>(Map.of("数学", 20));
+
+    private static Student student(String id, String name, int attended, Double test) {
+        Student st = new Student(id, name);
+        Student.SubjectRecord r = st.getOrCreateRecord("数学", 20);
+        r.attendedDays = attended;
+        r.testScore = test;
+        return st;
+    }
+
+    @Test
+    void savedTermsReloadWithValuesAndSharing() throws IOException {
+        Path file = dir.resolve(TermHistory.FILE_NAME);
+        TermHistory history = TermHistory.load(file);
+        Student a = student("S001", "山田\t太郎", 18, 80.0);
+        Student b = student("S002", "鈴木 花子", 20, null);
+        List<Student> roster = List.of(a, b);
+
+        history.save(history.snapshot("1学期", roster, SUBJECTS));
+        a.getRecord("数学").testScore = 92.0;
+        history.save(history.snapshot("2学期", roster, SUBJECTS));
+
+        TermHistory reloaded = TermHistory.load(file);
+        assertEquals(List.of("1学期", "2学期"), reloaded.getTerms().stream().map(TermHistory.Term::name).toList());
+        List<TermHistory.TermValue> math = reloaded.historyOf("S001", "数学");
+        assertEquals(80.0, math.get(0).record().testScore());
+        assertEquals(92.0, math.get(1).record().testScore());
+        assertEquals("山田\t太郎", reloaded.getTerms().get(0).students().get("S001").name());
+        assertNull(reloaded.historyOf("S002", "数学").get(0).record().testScore());
+
+        // 変わっていない生徒・科目設定は直前の学期と共有する
+        TermHistory.Term t1 = reloaded.getTerms().get(0), t2 = reloaded.getTerms().get(1);
+        assertSame(t1.students().get("S002"), t2.students().get("S002"));
+        assertSame(t1.subjectTotalDays(), t2.subjectTotalDays());
+    }
+
+    @Test
+    void unterminatedTermIsDropped() throws IOException {
+        Path file = dir.resolve(TermHistory.FILE_NAME);
+        TermHistory history = TermHistory.load(file);
+        history.save(history.snapshot("1学期", List.of(student("S001", "山田 太郎", 18, 80.0)), SUBJECTS));
+        // 書き込み途中で終了した学期（終端の行がない）
+        Files.writeString(file, "T\t2学期\t2026-10-01T09:00\nD\t数学\t20\nS\tS001\t山田 太郎\n",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        TermHistory reloaded = TermHistory.load(file);
+        assertEquals(1, reloaded.getTerms().size());
+        // 次に保存した学期は読める
+        reloaded.save(reloaded.snapshot("3学期", List.of(student("S001", "山田 太郎", 19, 85.0)), SUBJECTS));
+        assertEquals(List.of("1学期", "3学期"),
+                TermHistory.load(file).getTerms().stream().map(TermHistory.Term::name).toList());
+    }
+
+    @Test
+    void laterTermsStoreOnlyTheChanges() throws IOException {
+        Path file = dir.resolve(TermHistory.FILE_NAME);
+        TermHistory history = TermHistory.load(file);
+        Map<String, Integer> subjects = new LinkedHashMap<>(SUBJECTS);
+        subjects.put("英語", 15);
+        List<Student> roster = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Student st = student(String.format("S%03d", i), "生徒" + i, 18, 70.0);
+            st.getOrCreateRecord("英語", 15).attendedDays = 15;
+            roster.add(st);
+        }
+        history.save(history.snapshot("1学期", roster, subjects));
+        long first = Files.size(file);
+
+        roster.get(0).getRecord("数学").testScore = 95.0;                 // 記録の変更
+        roster.get(1).getSubjectMap().remove("英語");                     // 記録の削除
+        roster.remove(2);                                                 // 生徒の削除
+        roster.add(student("S999", "転入生", 20, 88.0));                   // 生徒の追加
+        history.save(history.snapshot("2学期", roster, subjects));
+        long second = Files.size(file) - first;
+        assertTrue(second * 20 < first, "2学期分 " + second + " バイト（1学期分 " + first + " バイト）");
+
+        TermHistory reloaded = TermHistory.load(file);
+        TermHistory.Term t1 = reloaded.getTerms().get(0), t2 = reloaded.getTerms().get(1);
+        assertEquals(200, t1.students().size());
+        assertEquals(200, t2.students().size());
+        assertEquals(95.0, t2.students().get("S000").records().get("数学").testScore());
+        assertEquals(Set.of("数学"), t2.students().get("S001").records().keySet());
+        assertFalse(t2.students().containsKey("S002"));
+        assertEquals(88.0, t2.students().get("S999").records().get("数学").testScore());
+        assertSame(t1.students().get("S100"), t2.students().get("S100"));
+        assertSame(t1.students().get("S000").records().get("英語"), t2.students().get("S000").records().get("英語"));
+        // 変わらない学期の次も、読み込んだ最後の学期との差分で保存する
+        reloaded.save(reloaded.snapshot("3学期", roster, subjects));
+        assertEquals(t2.students(), TermHistory.load(file).getTerms().get(2).students());
+    }
+
+    @Test
+    void termCutOffMidLineIsDropped() throws IOException {
+        Path file = dir.resolve(TermHistory.FILE_NAME);
+        TermHistory history = TermHistory.load(file);
+        history.save(history.snapshot("1学期", List.of(student("S001", "山田 太郎", 18, 80.0)), SUBJECTS));
+        // 記録の行の途中で終了した学期
+        Files.writeString(file, "T\t2学期\t2026-10-01T09:00\nD\t数学\t20\nS\tS001\t山田 太郎\nR\t数学\t2",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        TermHistory reloaded = TermHistory.load(file);
+        assertEquals(List.of("1学期"), reloaded.getTerms().stream().map(TermHistory.Term::name).toList());
+        // 次の学期は切れた行に続けず、新しい行から書かれる
+        reloaded.save(reloaded.snapshot("3学期", List.of(student("S001", "山田 太郎", 19, 85.0)), SUBJECTS));
+        TermHistory again = TermHistory.load(file);
+        assertEquals(List.of("1学期", "3学期"), again.getTerms().stream().map(TermHistory.Term::name).toList());
+        assertEquals(85.0, again.historyOf("S001", "数学").get(1).record().testScore());
+    }
+
+    @Test
+    void brokenTerminatedTermIsAnError() throws IOException {
+        Path file = dir.resolve(TermHistory.FILE_NAME);
+        Files.writeString(file, "T\t1学期\t2026-04-01T09:00\nD\t数学\t20\nS\tS001\t山田\nR\t数学\tx\t1\t\nE\n",
+                StandardCharsets.UTF_8);
+        assertThrows(IOException.class, () -> TermHistory.load(file));
+    }
+}
@@ -0,0 +1,104 @@
+package com.grademanager;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XlsxExporterTest {
+
+    private static final Map<String, Integer> SUBJECTS = new LinkedHashMap<>(Map.of("数学", 20));
+
+    private static Student student(String id, String name, int attended, Double test) {
+        Student st = new Student(id, name);
+        Student.SubjectRecord r = st.getOrCreateRecord("数学", 20);
+        r.attendedDays = attended;
+        r.testScore = test;
+        return st;
+    }
+
+    /** zip のエントリ名 → 内容 */
+    private static Map<String, String> unzip(byte[] xlsx) throws IOException {
+        Map<String, String> parts = new LinkedHashMap<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(xlsx), StandardCharsets.UTF_8)) {
+            for (ZipEntry e; (e = in.getNextEntry()) != null; )
+                parts.put(e.getName(), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        return parts;
+    }
+
+    private static List<String> sharedStrings(String sst) {
+        List<String> list = new ArrayList<>();
+        Matcher m = Pattern.compile("<si><t>(.*?)</t></si>").matcher(sst);
+        while (m.find()) list.add(m.group(1));
+        return list;
+    }
+
+    /** ref のセルの "s=スタイル t=型 値" を返す */
+    private static String cell(String sheet, String ref) {
+        Matcher m = Pattern.compile("<c r=\"" + ref + "\" s=\"(\\d+)\"(?: t=\"(\\w+)\")?>(?:<v>(.*?)</v>|<is><t>(.*?)</t></is>)</c>").matcher(sheet);
+        assertTrue(m.find(), ref + " がありません");
+        return m.group(1) + " " + m.group(2) + " " + (m.group(3) != null ? m.group(3) : m.group(4));
+    }
+
+    @Test
+    void writesSharedStringsAndGradeStyles() throws IOException {
+        List<Student> roster = List.of(
+            student("S001", "秀 <&> 太郎", 20, 100.0),   // 総合100 → 秀
+            student("S002", "出席不足", 10, 100.0));     // 出席5割 → 不可(出席)
+        XlsxExporter exporter = new XlsxExporter(roster, SUBJECTS);
+        roster.get(0).getRecord("数学").testScore = 0.0;  // 作成後の編集は書き出しに混ざらない
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, exporter.export(out));
+        Map<String, String> parts = unzip(out.toByteArray());
+        assertTrue(parts.keySet().containsAll(List.of("[Content_Types].xml", "xl/workbook.xml", "xl/styles.xml",
+                "xl/sharedStrings.xml", "xl/worksheets/sheet1.xml")));
+
+        List<String> sst = sharedStrings(parts.get("xl/sharedStrings.xml"));
+        assertTrue(sst.containsAll(List.of("学籍番号", "氏名", "数学（全20回）", "秀", "不可(出席)")));
+        String sheet = parts.get("xl/worksheets/sheet1.xml");
+
+        // 見出しは共有文字列、学籍番号・氏名はエスケープしたインライン文字列
+        assertEquals("1 s " + sst.indexOf("数学（全20回）"), cell(sheet, "C1"));
+        assertEquals("22 inlineStr S001", cell(sheet, "A3"));
+        assertEquals("22 inlineStr 秀 &lt;&amp;&gt; 太郎", cell(sheet, "B3"));
+        // 出席日数 / テスト / 総合 / 評価（XF_GRADE=13 + 評価帯）
+        assertEquals("18 inlineStr 20/20", cell(sheet, "C3"));
+        assertEquals("8 null 100.0", cell(sheet, "E3"));
+        assertEquals("13 s " + sst.indexOf("秀"), cell(sheet, "G3"));
+        assertEquals("19 inlineStr 10/20", cell(sheet, "C4"));
+        assertEquals("17 s " + sst.indexOf("不可(出席)"), cell(sheet, "G4"));
+    }
+
+    @Test
+    void rollsOverToANewSheetAtTheRowLimit() throws IOException {
+        List<Student> roster = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) roster.add(student("S00" + i, "生徒" + i, 18, 70.0));
+        // 見出し2行 + 生徒2人で1シート → 3シート
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(5, new XlsxExporter(roster, SUBJECTS, 4).export(out));
+        Map<String, String> parts = unzip(out.toByteArray());
+
+        assertTrue(parts.containsKey("xl/worksheets/sheet3.xml"));
+        assertFalse(parts.containsKey("xl/worksheets/sheet4.xml"));
+        assertTrue(parts.get("xl/workbook.xml").contains("name=\"成績 (3)\" sheetId=\"3\" r:id=\"rId3\""));
+        assertTrue(parts.get("[Content_Types].xml").contains("/xl/worksheets/sheet3.xml"));
+        assertTrue(parts.get("xl/_rels/workbook.xml.rels").contains("Id=\"rId5\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/sharedStrings\""));
+
+        // 各シートが見出しから始まり、データは3行目から続く
+        String second = parts.get("xl/worksheets/sheet2.xml");
+        assertTrue(second.contains("<row r=\"1\">"));
+        assertEquals("22 inlineStr S003", cell(second, "A3"));
+        assertEquals("22 inlineStr S004", cell(second, "A4"));
+        assertFalse(second.contains("<row r=\"5\">"));
+        assertEquals("22 inlineStr S005", cell(parts.get("xl/worksheets/sheet3.xml"), "A3"));
+    }
+}